@@ -0,0 +1,53 @@
+package logicanalyser;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.MediaType;
+
+/**
+ * A single piece of content to be analysed as part of a batch
+ */
+public class AnalysisInput {
+	private final MediaType type;
+	private final String content;
+	private final Object key;
+	
+	/**
+	 * Creates a new input without a key
+	 * @param type The MIME type of the content
+	 * @param content The content itself
+	 */
+	public AnalysisInput(MediaType type, String content) {
+		this(type, content, null);
+	}
+	
+	/**
+	 * Creates a new input
+	 * @param type The MIME type of the content
+	 * @param content The content itself
+	 * @param key Any object identifying the content, such as its path. May be null
+	 */
+	public AnalysisInput(MediaType type, String content, Object key) {
+		Preconditions.checkNotNull(type);
+		Preconditions.checkNotNull(content);
+		
+		this.type = type;
+		this.content = content;
+		this.key = key;
+	}
+	
+	public MediaType getType() {
+		return type;
+	}
+	
+	public String getContent() {
+		return content;
+	}
+	
+	/**
+	 * Gets the key given when this input was created
+	 * @return The key or null
+	 */
+	public Object getKey() {
+		return key;
+	}
+}
@@ -0,0 +1,55 @@
+package logicanalyser;
+
+/**
+ * The outcome of analysing a single input of a batch.
+ * Either a report is present, or the failure that stopped the analysis is.
+ */
+public class AnalysisResult {
+	private final int index;
+	private final AnalysisInput input;
+	private final Report report;
+	private final RuntimeException failure;
+	
+	AnalysisResult(int index, AnalysisInput input, Report report, RuntimeException failure) {
+		this.index = index;
+		this.input = input;
+		this.report = report;
+		this.failure = failure;
+	}
+	
+	/**
+	 * Gets the position of the input within the batch
+	 * @return The index, starting from 0
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	public AnalysisInput getInput() {
+		return input;
+	}
+	
+	/**
+	 * Gets the report of the input
+	 * @return The report or null if the analysis failed
+	 */
+	public Report getReport() {
+		return report;
+	}
+	
+	/**
+	 * Gets the reason the analysis failed, such as an {@link InvalidContentException}
+	 * @return The failure or null if the analysis succeeded
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+	
+	/**
+	 * Checks if a report was produced
+	 * @return True if the analysis succeeded
+	 */
+	public boolean isSuccessful() {
+		return failure == null;
+	}
+}
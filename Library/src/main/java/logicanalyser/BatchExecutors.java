@@ -0,0 +1,72 @@
+package logicanalyser;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Provides executors suitable for {@link LogicAnalyser#analyseBatch(Iterable, Executor, int)}
+ */
+public final class BatchExecutors {
+	private BatchExecutors() {
+	}
+	
+	/**
+	 * Gets the common fork-join pool
+	 * @return The shared pool. This must not be shut down
+	 */
+	public static Executor forkJoin() {
+		return ForkJoinPool.commonPool();
+	}
+	
+	/**
+	 * Creates a pool with a fixed number of threads
+	 * @param threads The number of threads
+	 * @return A new executor. The caller is responsible for shutting it down
+	 */
+	public static ExecutorService fixed(int threads) {
+		Preconditions.checkArgument(threads > 0);
+		
+		return Executors.newFixedThreadPool(threads);
+	}
+	
+	/**
+	 * Creates an executor that starts a virtual thread for each task.
+	 * @return A new executor. The caller is responsible for shutting it down
+	 * @throws UnsupportedOperationException Thrown if the running JDK does not have virtual threads
+	 * @see #hasVirtualThreads()
+	 */
+	public static ExecutorService virtualThreads() throws UnsupportedOperationException {
+		Method factory = findVirtualThreadFactory();
+		if (factory == null) {
+			throw new UnsupportedOperationException("Virtual threads are not available on this JDK");
+		}
+		
+		try {
+			return (ExecutorService)factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Virtual threads are not available on this JDK", e);
+		}
+	}
+	
+	/**
+	 * Checks if {@link #virtualThreads()} can be used
+	 * @return True if the running JDK has virtual threads
+	 */
+	public static boolean hasVirtualThreads() {
+		return findVirtualThreadFactory() != null;
+	}
+	
+	private static Method findVirtualThreadFactory() {
+		// Looked up reflectively so the library still builds and runs on Java 8
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+}
@@ -1,29 +1,57 @@
 package logicanalyser;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.SetMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.net.MediaType;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import logicanalyser.config.RuleConfiguration;
 import logicanalyser.languages.CSSAnalyser;
 import logicanalyser.languages.HTMLAnalyser;
 import logicanalyser.languages.LanguageBase;
+import logicanalyser.languages.html.DeclarativeRuleset;
 
 /**
  * The LogicAnalyser class provides access to all functionalities of this library.
+ * 
+ * A LogicAnalyser can be shared between threads. The installed languages and rulesets
+ * are kept in an immutable snapshot that is replaced as a whole whenever something is
+ * registered, so analyses never need to lock and always see a consistent set of rules.
  */
 public class LogicAnalyser {
-	private final Set<LanguageBase> installedLanguages;
-	private final SetMultimap<LanguageBase, Ruleset> installedRulesets;
-	private RuleConfiguration configuration;
+	/**
+	 * The category of the element patterns of the applied configuration
+	 */
+	public static final String CONFIGURED_CATEGORY = "Configured";
+	
+	/**
+	 * Guards changes to the registry. Reading the registry does not need this.
+	 */
+	private final Object registrationLock;
+	private volatile Registry registry;
+	private volatile RuleConfiguration configuration;
+	private volatile RuleBudget ruleBudget;
+	/**
+	 * The ruleset registered for the element patterns of the configuration, guarded by the registration lock
+	 */
+	private Ruleset configuredPatterns;
 	
 	public LogicAnalyser() {
-		installedLanguages = Sets.newHashSet();
-		installedRulesets = HashMultimap.create();
+		registrationLock = new Object();
+		registry = Registry.EMPTY;
+		ruleBudget = RuleBudget.UNLIMITED;
 		
 		// Install included languages
 		registerLanguageProcessor(new HTMLAnalyser());
@@ -38,14 +66,130 @@ public class LogicAnalyser {
 	 * @throws IllegalArgumentException Thrown if no language processor is able to handle the given MIME type
 	 */
 	public Report analyseContent(MediaType type, String content) throws IllegalArgumentException {
-		LanguageBase language = getLanguageFor(type);
+		// Everything for this analysis must come from the same snapshot
+		Registry snapshot = registry;
+		
+		LanguageBase language = snapshot.getLanguageFor(type);
 		if (language == null) {
 			throw new IllegalArgumentException("No handler for " + type);
 		}
 		
 		// TODO: Here is where you would remove rulesets that are not active.
 		
-		return language.process(type, content, installedRulesets.get(language), this);
+		return language.process(type, content, snapshot.getRulePlan(language), this);
+	}
+	
+	/**
+	 * Analyses many inputs at once on the given executor.
+	 * Failures of single inputs, such as an {@link InvalidContentException} or an
+	 * unsupported MIME type, are recorded in their result and do not stop the batch.
+	 * @param inputs The inputs to analyse. These are read lazily as tasks are started
+	 * @param executor The executor to run the analyses on. See {@link BatchExecutors}
+	 * @param maxParallelism The maximum number of inputs analysed at the same time
+	 * @return The results in the same order as the inputs
+	 * @throws InterruptedException Thrown if the calling thread is interrupted while waiting
+	 */
+	public List<AnalysisResult> analyseBatch(Iterable<AnalysisInput> inputs, Executor executor, int maxParallelism) throws InterruptedException {
+		Map<Integer, AnalysisResult> results = Maps.newHashMap();
+		
+		// The consumer is never called concurrently
+		analyseBatch(inputs, executor, maxParallelism, result -> results.put(result.getIndex(), result));
+		
+		AnalysisResult[] ordered = new AnalysisResult[results.size()];
+		for (AnalysisResult result : results.values()) {
+			ordered[result.getIndex()] = result;
+		}
+		
+		return Arrays.asList(ordered);
+	}
+	
+	/**
+	 * Analyses many inputs at once on the given executor, handing each result to the
+	 * consumer as soon as it is ready. Results arrive in completion order, and the 
+	 * consumer is only ever called by one thread at a time.
+	 * Failures of single inputs, such as an {@link InvalidContentException} or an
+	 * unsupported MIME type, are recorded in their result and do not stop the batch.
+	 * 
+	 * This method returns once every result has been consumed. If the executor
+	 * rejects a task, no more inputs are submitted, and the exception is thrown
+	 * once the tasks that were started have handed over their results.
+	 * @param inputs The inputs to analyse. These are read lazily as tasks are started
+	 * @param executor The executor to run the analyses on. See {@link BatchExecutors}
+	 * @param maxParallelism The maximum number of inputs analysed at the same time
+	 * @param consumer Receives the result of each input
+	 * @throws InterruptedException Thrown if the calling thread is interrupted while waiting
+	 */
+	public void analyseBatch(Iterable<AnalysisInput> inputs, Executor executor, int maxParallelism, Consumer<AnalysisResult> consumer) throws InterruptedException {
+		Preconditions.checkNotNull(inputs);
+		Preconditions.checkNotNull(executor);
+		Preconditions.checkNotNull(consumer);
+		Preconditions.checkArgument(maxParallelism > 0);
+		
+		// Every running task holds a permit, so the submitting thread cannot run ahead of the workers
+		Semaphore permits = new Semaphore(maxParallelism);
+		Object consumerLock = new Object();
+		AtomicReference<Throwable> fatal = new AtomicReference<>();
+		
+		RuntimeException submitFailure = null;
+		int index = 0;
+		try {
+			for (AnalysisInput input : inputs) {
+				Preconditions.checkNotNull(input);
+				
+				permits.acquire();
+				if (fatal.get() != null) {
+					permits.release();
+					break;
+				}
+				
+				int inputIndex = index++;
+				try {
+					executor.execute(() -> {
+						try {
+							AnalysisResult result = analyseInput(inputIndex, input);
+							synchronized (consumerLock) {
+								consumer.accept(result);
+							}
+						} catch (Throwable e) {
+							fatal.compareAndSet(null, e);
+						} finally {
+							permits.release();
+						}
+					});
+				} catch (RuntimeException e) {
+					// The task was never started, so its permit is not released by it
+					permits.release();
+					throw e;
+				}
+			}
+		} catch (RuntimeException e) {
+			// Such as a rejected task or a failing input iterator. No more tasks are
+			// submitted, but the running ones may still call the consumer
+			submitFailure = e;
+		}
+		
+		// Wait for all outstanding tasks to finish
+		permits.acquire(maxParallelism);
+		permits.release(maxParallelism);
+		
+		Throwable failure = fatal.get();
+		if (submitFailure != null) {
+			if (failure != null) {
+				submitFailure.addSuppressed(failure);
+			}
+			throw submitFailure;
+		} else if (failure != null) {
+			Throwables.propagateIfPossible(failure);
+			throw new IllegalStateException("Batch analysis failed", failure);
+		}
+	}
+	
+	private AnalysisResult analyseInput(int index, AnalysisInput input) {
+		try {
+			return new AnalysisResult(index, input, analyseContent(input.getType(), input.getContent()), null);
+		} catch (RuntimeException e) {
+			return new AnalysisResult(index, input, null, e);
+		}
 	}
 	
 	/**
@@ -54,13 +198,7 @@ public class LogicAnalyser {
 	 * @return True if {@link #analyseContent(MediaType, String)} will succeed.
 	 */
 	public boolean canAnalyseContent(MediaType type) {
-		for (LanguageBase language : installedLanguages) {
-			if (language.doesAccept(type)) {
-				return true;
-			}
-		}
-		
-		return false;
+		return registry.getLanguageFor(type) != null;
 	}
 	
 	/**
@@ -69,13 +207,7 @@ public class LogicAnalyser {
 	 * @return The language processor or null
 	 */
 	public LanguageBase getLanguageFor(MediaType type) {
-		for (LanguageBase language : installedLanguages) {
-			if (language.doesAccept(type)) {
-				return language;
-			}
-		}
-		
-		return null;
+		return registry.getLanguageFor(type);
 	}
 	
 	/**
@@ -85,7 +217,7 @@ public class LogicAnalyser {
 	public Set<MediaType> getSupportedTypes() {
 		ImmutableSet.Builder<MediaType> builder = ImmutableSet.builder();
 		
-		for (LanguageBase language : installedLanguages) {
+		for (LanguageBase language : registry.languages) {
 			builder.addAll(language.getAcceptedTypes());
 		}
 		
@@ -101,17 +233,28 @@ public class LogicAnalyser {
 	public void registerLanguageProcessor(LanguageBase language) {
 		Preconditions.checkNotNull(language);
 		
-		Preconditions.checkArgument(!installedLanguages.contains(language));
-		Preconditions.checkArgument(
-			!installedLanguages
-				.stream()
-				.anyMatch(
-					lang -> lang.getName().equals(language.getName()
+		synchronized (registrationLock) {
+			Registry current = registry;
+			
+			Preconditions.checkArgument(!current.languages.contains(language));
+			Preconditions.checkArgument(
+				!current.languages
+					.stream()
+					.anyMatch(
+						lang -> lang.getName().equals(language.getName()
+					)
 				)
-			)
-		);
-					
-		installedLanguages.add(language);
+			);
+			
+			registry = new Registry(
+				ImmutableSet.<LanguageBase>builder()
+					.addAll(current.languages)
+					.add(language)
+					.build(),
+				current.rulesets,
+				current.plans
+			);
+		}
 	}
 	
 	/**
@@ -121,8 +264,24 @@ public class LogicAnalyser {
 	public void deregisterLanguageProcessor(LanguageBase language) {
 		Preconditions.checkNotNull(language);
 		
-		if (installedLanguages.remove(language)) {
-			installedRulesets.removeAll(language);
+		synchronized (registrationLock) {
+			Registry current = registry;
+			if (!current.languages.contains(language)) {
+				return;
+			}
+			
+			ImmutableSetMultimap.Builder<LanguageBase, Ruleset> rulesets = ImmutableSetMultimap.builder();
+			for (Map.Entry<LanguageBase, Ruleset> entry : current.rulesets.entries()) {
+				if (entry.getKey() != language) {
+					rulesets.put(entry);
+				}
+			}
+			
+			registry = new Registry(
+				ImmutableSet.copyOf(Sets.filter(current.languages, lang -> lang != language)),
+				rulesets.build(),
+				ImmutableMap.copyOf(Maps.filterKeys(current.plans, lang -> lang != language))
+			);
 		}
 	}
 	
@@ -131,8 +290,8 @@ public class LogicAnalyser {
 	 * @param type The type of the language processor
 	 * @return The language processor
 	 */
-	private LanguageBase getLanguage(Class<? extends LanguageBase> type) {
-		for (LanguageBase language : installedLanguages) {
+	private static LanguageBase getLanguage(Registry registry, Class<? extends LanguageBase> type) {
+		for (LanguageBase language : registry.languages) {
 			if (type.equals(language.getClass())) {
 				return language;
 			}
@@ -150,12 +309,21 @@ public class LogicAnalyser {
 	public void registerRuleset(Ruleset ruleset) throws IllegalStateException {
 		Preconditions.checkNotNull(ruleset);
 		
-		LanguageBase targetLanguage = getLanguage(ruleset.getLanguage());
-		if (targetLanguage == null) {
-			throw new IllegalStateException("Target Language is not installed");
+		synchronized (registrationLock) {
+			Registry current = registry;
+			
+			LanguageBase targetLanguage = getLanguage(current, ruleset.getLanguage());
+			if (targetLanguage == null) {
+				throw new IllegalStateException("Target Language is not installed");
+			}
+			
+			ImmutableSetMultimap<LanguageBase, Ruleset> rulesets = ImmutableSetMultimap.<LanguageBase, Ruleset>builder()
+				.putAll(current.rulesets)
+				.put(targetLanguage, ruleset)
+				.build();
+			
+			registry = current.withRulesets(rulesets, targetLanguage);
 		}
-		
-		installedRulesets.put(targetLanguage, ruleset);
 	}
 	
 	/**
@@ -165,21 +333,51 @@ public class LogicAnalyser {
 	public void deregisterRuleset(Ruleset ruleset) {
 		Preconditions.checkNotNull(ruleset);
 		
-		LanguageBase targetLanguage = getLanguage(ruleset.getLanguage());
-		if (targetLanguage == null) {
-			throw new IllegalArgumentException("Target Language is not installed");
+		synchronized (registrationLock) {
+			Registry current = registry;
+			
+			LanguageBase targetLanguage = getLanguage(current, ruleset.getLanguage());
+			if (targetLanguage == null) {
+				throw new IllegalArgumentException("Target Language is not installed");
+			}
+			
+			ImmutableSetMultimap.Builder<LanguageBase, Ruleset> rulesets = ImmutableSetMultimap.builder();
+			for (Map.Entry<LanguageBase, Ruleset> entry : current.rulesets.entries()) {
+				if (entry.getKey() != targetLanguage || !entry.getValue().equals(ruleset)) {
+					rulesets.put(entry);
+				}
+			}
+			
+			registry = current.withRulesets(rulesets.build(), targetLanguage);
 		}
-		
-		installedRulesets.remove(targetLanguage, ruleset);
 	}
 	
 	/**
 	 * Applies the configuration stored in RuleConfiguration.
-	 * It will be consulted to find the messages for each rule
+	 * It will be consulted to find the messages for each rule.
+	 * 
+	 * The element patterns of the configuration, such as the {@code <match>}
+	 * rules of an XML configuration, are registered as a {@link DeclarativeRuleset}
+	 * in the category {@value #CONFIGURED_CATEGORY}, replacing the patterns of the
+	 * previous configuration. Patterns added to the configuration later are
+	 * only picked up when it is applied again.
 	 * @param config The configuration
 	 */
 	public void applyRuleConfiguration(RuleConfiguration config) {
-		this.configuration = config;
+		synchronized (registrationLock) {
+			this.configuration = config;
+			
+			// Dropped along with the rulesets of the language if it was deregistered
+			if (configuredPatterns != null && getLanguage(registry, configuredPatterns.getLanguage()) != null) {
+				deregisterRuleset(configuredPatterns);
+			}
+			configuredPatterns = null;
+			
+			if (config != null && !config.getElementPatterns().isEmpty() && getLanguage(registry, HTMLAnalyser.class) != null) {
+				configuredPatterns = new DeclarativeRuleset(CONFIGURED_CATEGORY, config);
+				registerRuleset(configuredPatterns);
+			}
+		}
 	}
 	
 	/**
@@ -190,10 +388,84 @@ public class LogicAnalyser {
 	 * @return The rule configuration
 	 */
 	public RuleConfiguration getRuleConfiguration() {
-		if (configuration == null) {
+		RuleConfiguration current = configuration;
+		if (current == null) {
 			return RuleConfiguration.DEFAULT;
 		} else {
-			return configuration;
+			return current;
+		}
+	}
+	
+	/**
+	 * Limits the time each rule may spend on one piece of content.
+	 * The same budget is used for every following analysis, so its circuit
+	 * breakers see every piece of content.
+	 * @param budget The budget, or {@link RuleBudget#UNLIMITED}
+	 */
+	public void applyRuleBudget(RuleBudget budget) {
+		Preconditions.checkNotNull(budget);
+		this.ruleBudget = budget;
+	}
+	
+	/**
+	 * Retrieves the time budget of rules
+	 * @return The budget, which is {@link RuleBudget#UNLIMITED} unless one was applied
+	 */
+	public RuleBudget getRuleBudget() {
+		return ruleBudget;
+	}
+	
+	/**
+	 * An immutable snapshot of everything that has been registered
+	 */
+	private static class Registry {
+		private static final Registry EMPTY = new Registry(
+			ImmutableSet.of(), 
+			ImmutableSetMultimap.of(), 
+			ImmutableMap.of()
+		);
+		
+		private final ImmutableSet<LanguageBase> languages;
+		private final ImmutableSetMultimap<LanguageBase, Ruleset> rulesets;
+		private final ImmutableMap<LanguageBase, RulePlan> plans;
+		
+		public Registry(ImmutableSet<LanguageBase> languages, ImmutableSetMultimap<LanguageBase, Ruleset> rulesets, ImmutableMap<LanguageBase, RulePlan> plans) {
+			this.languages = languages;
+			this.rulesets = rulesets;
+			this.plans = plans;
+		}
+		
+		/**
+		 * Creates a new snapshot with changed rulesets, compiling the rule plan
+		 * for the language whose rulesets changed
+		 */
+		public Registry withRulesets(ImmutableSetMultimap<LanguageBase, Ruleset> newRulesets, LanguageBase changed) {
+			RulePlan plan = changed.compileRules(newRulesets.get(changed));
+			Preconditions.checkNotNull(plan, "Language did not compile a rule plan");
+			
+			Map<LanguageBase, RulePlan> newPlans = Maps.newHashMap(plans);
+			newPlans.put(changed, plan);
+			
+			return new Registry(languages, newRulesets, ImmutableMap.copyOf(newPlans));
+		}
+		
+		public LanguageBase getLanguageFor(MediaType type) {
+			for (LanguageBase language : languages) {
+				if (language.doesAccept(type)) {
+					return language;
+				}
+			}
+			
+			return null;
+		}
+		
+		public RulePlan getRulePlan(LanguageBase language) {
+			RulePlan plan = plans.get(language);
+			if (plan == null) {
+				return RulePlan.EMPTY;
+			} else {
+				return plan;
+			}
 		}
 	}
 }
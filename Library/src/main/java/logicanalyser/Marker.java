@@ -25,6 +25,9 @@ public class Marker implements Serializable, Comparable<Marker> {
 	private String locationSpecifier;
 	private URL moreInformationLink;
 	private String suggestedFix;
+	private String ruleId;
+	private String tagName;
+	private int elementOrdinal = -1;
 
 	/**
 	 * Creates a new Marker
@@ -163,6 +166,51 @@ public class Marker implements Serializable, Comparable<Marker> {
 		this.suggestedFix = fix;
 	}
 
+	/**
+	 * Gets the ID of the rule that created this Marker
+	 * @return An Optional that is empty if the Marker was not created by a rule
+	 */
+	public Optional<String> getRuleId() {
+		return Optional.ofNullable(ruleId);
+	}
+	
+	/**
+	 * Sets the ID of the rule that created this Marker
+	 * @param ruleId The ID
+	 */
+	public void setRuleId(String ruleId) {
+		this.ruleId = ruleId;
+	}
+	
+	/**
+	 * Gets the tag name of the HTML element this Marker was created for
+	 * @return An Optional that is empty if the Marker is not on an element
+	 */
+	public Optional<String> getTagName() {
+		return Optional.ofNullable(tagName);
+	}
+	
+	/**
+	 * Gets the position of the element this Marker was created for among
+	 * all elements of the document, in document order. The document itself
+	 * is at 0.
+	 * @return The ordinal, or -1 if it is not known
+	 */
+	public int getElementOrdinal() {
+		return elementOrdinal;
+	}
+	
+	/**
+	 * Sets the HTML element this Marker was created for
+	 * @param tagName The tag name of the element
+	 * @param ordinal The position of the element in document order, or -1 if it is not known
+	 */
+	public void setElement(String tagName, int ordinal) {
+		Preconditions.checkArgument(ordinal >= -1);
+		this.tagName = tagName;
+		this.elementOrdinal = ordinal;
+	}
+	
 	@Override
 	public String toString() {
 		return String.format("%s Marker at %s", severity.name(), location);
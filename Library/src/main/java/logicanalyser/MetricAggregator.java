@@ -0,0 +1,58 @@
+package logicanalyser;
+
+import logicanalyser.languages.MetricContext;
+
+/**
+ * A metric that is built up from many smaller targets instead of a
+ * single one. Language processors that walk their content will feed
+ * each of the smaller targets to the aggregator, so the metric does
+ * not need to walk the content again by itself.
+ *
+ * An aggregator is shared between analyses, so everything that belongs
+ * to a single analysis must be kept in the state object.
+ *
+ * The targets may be split into consecutive runs that are accumulated
+ * into separate states, possibly on different threads, and then merged.
+ * The metric must be the same as if all targets had gone into one state.
+ * @param <T> The type of target that is fed to the aggregator
+ * @param <S> The type of the state
+ */
+public interface MetricAggregator<T, S> {
+	/**
+	 * The type of target that {@link #accumulate(Object, MetricContext, Object)} expects
+	 * @return The target type
+	 */
+	Class<T> getAggregatedType();
+
+	/**
+	 * Creates a new empty state for a single analysis
+	 * @return The state
+	 */
+	S createState();
+
+	/**
+	 * Adds a single target to the state
+	 * @param state The state created by {@link #createState()}
+	 * @param context Extra information that may be useful
+	 * @param target The target
+	 */
+	void accumulate(S state, MetricContext context, T target);
+
+	/**
+	 * Combines two states. The targets of the first state come before the
+	 * targets of the second. Merging must be associative, so that runs
+	 * can be merged in any grouping as long as their order is kept.
+	 * @param first The earlier state, which may be modified and returned
+	 * @param second The later state, which is not used again afterwards
+	 * @return The state holding the targets of both
+	 */
+	S merge(S first, S second);
+
+	/**
+	 * Produces the metric once all targets have been accumulated
+	 * @param context Extra information that may be useful
+	 * @param state The state holding all accumulated targets
+	 * @return A metric
+	 */
+	MetricBase finish(MetricContext context, S state);
+}
@@ -35,6 +35,17 @@ public class MetricList extends MetricBase implements Serializable {
 		this.values = values;
 	}
 	
+	/**
+	 * Creates a MetricList that keeps its values in another form.
+	 * Subclasses using this must override {@link #getValues()},
+	 * {@link #size()} and {@link #getValue(int)}.
+	 * @param name The name of the metric
+	 */
+	protected MetricList(String name) {
+		super(name);
+		this.values = null;
+	}
+	
 	/**
 	 * Gets the value for this metric from MetricValue[]
 	 * @return A value from MetricValue[]
@@ -0,0 +1,117 @@
+package logicanalyser;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A MetricList that keeps its values in one int array per column, rather
+ * than one {@link MetricValue} per entry. Large per-line metrics then
+ * only take a few arrays, however many lines there are.
+ *
+ * It reads the same as any other MetricList. {@link MetricValue}s are
+ * created when they are asked for, so reading the columns is cheaper.
+ */
+public class PackedMetricList extends MetricList {
+	private static final long serialVersionUID = 1L;
+
+	private final int[][] columns;
+	private final int size;
+
+	/**
+	 * Creates a new PackedMetricList. The arrays are not copied and must not be changed afterwards.
+	 * @param name The name of the metric
+	 * @param columns The columns, where entry i is made of element i of each column.
+	 * 		There must be at least 1 column
+	 * @throws IllegalArgumentException Thrown if there are no columns, or they
+	 *		are of different lengths
+	 */
+	public PackedMetricList(String name, int[]... columns) {
+		super(name);
+
+		Preconditions.checkArgument(columns.length >= 1, "There must be at least 1 column");
+		for (int[] column : columns) {
+			Preconditions.checkNotNull(column);
+			Preconditions.checkArgument(column.length == columns[0].length, "Columns have different lengths");
+		}
+
+		this.columns = columns;
+		this.size = columns[0].length;
+	}
+
+	/**
+	 * Gets the number of values in each entry
+	 * @return The number of columns
+	 */
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	/**
+	 * Gets a single value without creating a {@link MetricValue}
+	 * @param index The index of the entry, up to {@link #size()} -1
+	 * @param column The column, up to {@link #getColumnCount()} -1
+	 * @return The value
+	 */
+	public int get(int index, int column) {
+		return columns[column][index];
+	}
+
+	/**
+	 * Gets a whole column
+	 * @param column The column, up to {@link #getColumnCount()} -1
+	 * @return A copy of the column
+	 */
+	public int[] getColumn(int column) {
+		return Arrays.copyOf(columns[column], size);
+	}
+
+	/**
+	 * Copies part of a column into an array
+	 * @param column The column, up to {@link #getColumnCount()} -1
+	 * @param from The first entry to copy
+	 * @param target The array to copy into
+	 * @param offset The position in the target to copy to
+	 * @param length The number of entries to copy
+	 */
+	public void copyColumn(int column, int from, int[] target, int offset, int length) {
+		System.arraycopy(columns[column], from, target, offset, length);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the index element in values. A new MetricValue is created on every call.
+	 * @param index The index of the value, up to {@link #size()} -1
+	 * @return The index element of the value
+	 */
+	@Override
+	public MetricValue getValue(int index) {
+		Preconditions.checkElementIndex(index, size);
+
+		int[] value = new int[columns.length];
+		for (int column = 0; column < columns.length; ++column) {
+			value[column] = columns[column][index];
+		}
+
+		return new MetricValue(value);
+	}
+
+	/**
+	 * Gets every value. This creates a MetricValue for every entry,
+	 * so {@link #get(int, int)} or {@link #getColumn(int)} should be preferred.
+	 * @return A new array of values
+	 */
+	@Override
+	public MetricValue[] getValues() {
+		MetricValue[] values = new MetricValue[size];
+		for (int i = 0; i < size; ++i) {
+			values[i] = getValue(i);
+		}
+
+		return values;
+	}
+}
@@ -1,5 +1,9 @@
 package logicanalyser;
 
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+
 import logicanalyser.config.Details;
 import logicanalyser.languages.Context;
 import logicanalyser.languages.LanguageBase;
@@ -23,6 +27,21 @@ public abstract class Rule<E> {
 	 * Description of the rule
 	 */
 	private String description;
+	
+	/**
+	 * The tag names this rule is limited to. Empty for all tags
+	 */
+	private final Set<String> targetTags;
+	
+	/**
+	 * The attributes of which at least one must be in a document for this rule to fire
+	 */
+	private Set<String> requiredAttributes;
+	
+	/**
+	 * True if the markers of this rule only depend on the subtree of its target
+	 */
+	private boolean pure;
 
 	/**
 	 * Constructs the rule for the given type.
@@ -30,14 +49,75 @@ public abstract class Rule<E> {
 	 * @param name The name of the rule
 	 */
 	public Rule(Class<E> type, String name) {
+		this(type, name, new String[0]);
+	}
+	
+	/**
+	 * Constructs the rule for the given type, limited to the given tag names.
+	 * The tag names are only used by languages that check elements, which
+	 * will then only call the rule for elements with one of those tags.
+	 * @param type The type of object being checked
+	 * @param name The name of the rule
+	 * @param targetTags The lower case tag names the rule can fire on
+	 */
+	public Rule(Class<E> type, String name, String... targetTags) {
 		this.type = type;
 		this.ruleName = name;
+		this.targetTags = ImmutableSet.copyOf(targetTags);
+		this.requiredAttributes = ImmutableSet.of();
 	}
 	
 	public Class<E> getTarget() {
 		return type;
 	}
 	
+	/**
+	 * Gets the tag names this rule is limited to
+	 * @return An unmodifiable set of tag names, empty if the rule checks all elements
+	 */
+	public Set<String> getTargetTags() {
+		return targetTags;
+	}
+	
+	/**
+	 * Gets the attributes this rule needs. A document without any of them
+	 * on any element can never make the rule fire, so languages may skip
+	 * the rule for that document.
+	 * @return An unmodifiable set of lower case attribute names, empty if the rule needs none
+	 */
+	public Set<String> getRequiredAttributes() {
+		return requiredAttributes;
+	}
+	
+	/**
+	 * Declares the attributes this rule needs. This should be called
+	 * from the constructor, before the rule is registered.
+	 * @param attributes The lower case attribute names, of which at least
+	 * 		one must be present for the rule to fire
+	 */
+	protected final void requireAttributes(String... attributes) {
+		this.requiredAttributes = ImmutableSet.copyOf(attributes);
+	}
+	
+	/**
+	 * Checks if this rule is pure. The markers of a pure rule only depend on
+	 * the subtree of its target, so results for identical subtrees may be reused.
+	 * @return True if the rule is pure
+	 */
+	public boolean isPure() {
+		return pure;
+	}
+	
+	/**
+	 * Declares that the markers of this rule only depend on the subtree of its target:
+	 * its name, its attributes and its descendants, but not its parent, siblings
+	 * or position. Markers must only be added to the target or its descendants.
+	 * This should be called from the constructor, before the rule is registered.
+	 */
+	protected final void declarePure() {
+		this.pure = true;
+	}
+	
 	public String getRuleName() {
 		return ruleName;
 	}
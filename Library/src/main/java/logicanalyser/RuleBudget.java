@@ -0,0 +1,421 @@
+package logicanalyser;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Limits the time each rule may spend on a single document.
+ *
+ * Every call of a rule is timed, and once the calls of a rule on a document
+ * add up to more than the budget, the rule is not called again for the rest
+ * of that document. An informational marker tells the user that the rule
+ * was cut short.
+ *
+ * Rules that go over their budget on several documents in a row trip a
+ * circuit breaker. They are then not run at all until a cooldown has passed.
+ * After that, the first document to reach the rule runs it as a probe while
+ * other documents still skip it, and the probe decides if the breaker closes
+ * again. A probe that never reports back, such as one whose analysis failed,
+ * is given up on after another cooldown.
+ *
+ * A call that is already running is never interrupted. A rule that spends a
+ * long time in one call, such as one check of a whole stylesheet, is only
+ * stopped once that call returns.
+ *
+ * A budget keeps the breaker state of every rule, so the same instance
+ * should be used for all analyses. It is safe to share between threads.
+ * Rules are only weakly referenced, so the rules of deregistered rulesets
+ * can still be garbage collected.
+ */
+public class RuleBudget {
+	/**
+	 * A budget that never stops a rule. Rules are not timed at all.
+	 */
+	public static final RuleBudget UNLIMITED = new RuleBudget();
+
+	private static final Usage UNTRACKED = new Usage(UNLIMITED);
+
+	private final long budgetNanos;
+	private final int tripAfter;
+	private final long cooldownNanos;
+	private final Ticker ticker;
+
+	private final ConcurrentMap<Rule<?>, Breaker> breakers;
+
+	private RuleBudget() {
+		budgetNanos = Long.MAX_VALUE;
+		tripAfter = 0;
+		cooldownNanos = 0;
+		ticker = Ticker.systemTicker();
+		breakers = new MapMaker().weakKeys().makeMap();
+	}
+
+	private RuleBudget(Builder builder) {
+		budgetNanos = builder.budgetNanos;
+		tripAfter = builder.tripAfter;
+		cooldownNanos = builder.cooldownNanos;
+		ticker = builder.ticker;
+		breakers = new MapMaker().weakKeys().makeMap();
+	}
+
+	/**
+	 * Starts a new budget
+	 * @param budget The time each rule may spend on one document
+	 * @param unit The unit of the budget
+	 * @return The builder
+	 */
+	public static Builder builder(long budget, TimeUnit unit) {
+		return new Builder(budget, unit);
+	}
+
+	/**
+	 * Starts tracking the rules run on a single document
+	 * @return The usage of the document
+	 */
+	public Usage startDocument() {
+		if (this == UNLIMITED) {
+			return UNTRACKED;
+		} else {
+			return new Usage(this);
+		}
+	}
+
+	/**
+	 * Checks if the circuit breaker of a rule is currently open
+	 * @param rule The rule
+	 * @return True if the rule is not being run, other than by a probe
+	 */
+	public boolean isTripped(Rule<?> rule) {
+		Breaker breaker = breakers.get(rule);
+		return breaker != null && breaker.isOpen(ticker.read(), cooldownNanos);
+	}
+	
+	/**
+	 * Decides if a document may run a rule, claiming the probe if the cooldown has passed
+	 */
+	private Admission admit(Rule<?> rule) {
+		Breaker breaker = breakers.get(rule);
+		if (breaker == null) {
+			return Admission.RUN;
+		}
+		
+		return breaker.admit(ticker.read(), cooldownNanos);
+	}
+
+	/**
+	 * Gets the time each rule may spend on one document
+	 * @param unit The unit to return the time in
+	 * @return The budget
+	 */
+	public long getBudget(TimeUnit unit) {
+		return unit.convert(budgetNanos, TimeUnit.NANOSECONDS);
+	}
+
+	public static class Builder {
+		private final long budgetNanos;
+		private int tripAfter;
+		private long cooldownNanos;
+		private Ticker ticker;
+
+		private Builder(long budget, TimeUnit unit) {
+			Preconditions.checkArgument(budget > 0);
+			Preconditions.checkNotNull(unit);
+
+			budgetNanos = unit.toNanos(budget);
+			tripAfter = 3;
+			cooldownNanos = TimeUnit.MINUTES.toNanos(1);
+			ticker = Ticker.systemTicker();
+		}
+
+		/**
+		 * Sets how many documents in a row a rule must go over budget on
+		 * before its circuit breaker trips. The default is 3.
+		 * @param documents The number of documents, or 0 to never trip
+		 * @return This builder
+		 */
+		public Builder tripAfter(int documents) {
+			Preconditions.checkArgument(documents >= 0);
+			this.tripAfter = documents;
+			return this;
+		}
+
+		/**
+		 * Sets how long a tripped rule is not run for. The default is one minute.
+		 * @param cooldown The time
+		 * @param unit The unit of the time
+		 * @return This builder
+		 */
+		public Builder cooldown(long cooldown, TimeUnit unit) {
+			Preconditions.checkArgument(cooldown >= 0);
+			this.cooldownNanos = unit.toNanos(cooldown);
+			return this;
+		}
+
+		/**
+		 * Sets the source of time, which is the system time by default
+		 * @param ticker The ticker
+		 * @return This builder
+		 */
+		public Builder ticker(Ticker ticker) {
+			this.ticker = Preconditions.checkNotNull(ticker);
+			return this;
+		}
+
+		public RuleBudget build() {
+			return new RuleBudget(this);
+		}
+	}
+
+	/**
+	 * The time spent by each rule on one document. The rules of a document
+	 * may be run on several threads at once.
+	 */
+	public static class Usage {
+		private final RuleBudget budget;
+		private final ConcurrentMap<Rule<?>, RuleUsage> rules;
+
+		private Usage(RuleBudget budget) {
+			this.budget = budget;
+			rules = new ConcurrentHashMap<>();
+		}
+
+		/**
+		 * Checks if rules need to be timed at all
+		 * @return False if no rule will ever be stopped
+		 */
+		public boolean isTracking() {
+			return budget != UNLIMITED;
+		}
+
+		/**
+		 * Reads the ticker of the budget
+		 * @return The current time in nanoseconds
+		 */
+		public long now() {
+			return budget.ticker.read();
+		}
+
+		/**
+		 * Gets the usage of a single rule
+		 * @param rule The rule
+		 * @return The usage
+		 */
+		public RuleUsage forRule(Rule<?> rule) {
+			RuleUsage usage = rules.get(rule);
+			if (usage == null) {
+				usage = rules.computeIfAbsent(rule, r -> new RuleUsage(r, budget, budget.admit(r)));
+			}
+
+			return usage;
+		}
+
+		/**
+		 * Records the outcome of the document in the circuit breakers.
+		 * This should be called once every rule has been run.
+		 */
+		public void finish() {
+			if (!isTracking() || budget.tripAfter == 0) {
+				return;
+			}
+
+			long now = now();
+			for (Map.Entry<Rule<?>, RuleUsage> entry : rules.entrySet()) {
+				RuleUsage usage = entry.getValue();
+				if (usage.skipped) {
+					continue;
+				}
+
+				Breaker breaker = budget.breakers.computeIfAbsent(entry.getKey(), rule -> new Breaker());
+				breaker.record(usage.isStopped(), usage.probe, now, budget.tripAfter, budget.cooldownNanos);
+			}
+		}
+	}
+
+	/**
+	 * The time spent by one rule on one document
+	 */
+	public static class RuleUsage {
+		private final Rule<?> rule;
+		private final RuleBudget budget;
+		private final boolean skipped;
+		private final boolean probe;
+
+		private final AtomicLong spent;
+		private volatile boolean stopped;
+		private final AtomicBoolean noticed;
+
+		private RuleUsage(Rule<?> rule, RuleBudget budget, Admission admission) {
+			this.rule = rule;
+			this.budget = budget;
+			skipped = admission == Admission.SKIP;
+			probe = admission == Admission.PROBE;
+
+			spent = new AtomicLong();
+			stopped = skipped;
+			noticed = new AtomicBoolean();
+		}
+
+		/**
+		 * Checks if the rule must not be called again on this document
+		 * @return True if the rule went over budget, or its breaker is open
+		 */
+		public boolean isStopped() {
+			return stopped;
+		}
+
+		/**
+		 * Adds the time of one call of the rule
+		 * @param nanos The time the call took
+		 * @return True if this call took the rule over budget
+		 */
+		public boolean charge(long nanos) {
+			if (spent.addAndGet(nanos) > budget.budgetNanos && !stopped) {
+				stopped = true;
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Claims the notice about the rule being stopped. Only the first call succeeds,
+		 * so the notice is only given once per document.
+		 * @return True if the notice should be given
+		 */
+		public boolean claimNotice() {
+			return stopped && noticed.compareAndSet(false, true);
+		}
+
+		/**
+		 * Creates the informational marker about the rule being stopped
+		 * @param location The location to give the marker
+		 * @return The marker
+		 */
+		public Marker createNotice(Interval location) {
+			String description;
+			if (skipped) {
+				description = String.format(
+					"The rule %s was not run because it repeatedly took longer than its time budget of %d ms",
+					rule.getRuleName(), budget.getBudget(TimeUnit.MILLISECONDS)
+				);
+			} else {
+				description = String.format(
+					"The rule %s took longer than its time budget of %d ms and was not run on the rest of the content",
+					rule.getRuleName(), budget.getBudget(TimeUnit.MILLISECONDS)
+				);
+			}
+
+			return new Marker(location, SeverityRating.Informational, description);
+		}
+	}
+
+	private enum Admission {
+		RUN,
+		SKIP,
+		/**
+		 * Runs the rule to decide if its breaker closes
+		 */
+		PROBE
+	}
+
+	/**
+	 * Counts the documents in a row a rule went over budget on.
+	 * Every change replaces the immutable state with compare-and-set.
+	 */
+	private static class Breaker {
+		private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+		public boolean isOpen(long now, long cooldownNanos) {
+			State current = state.get();
+			switch (current.phase) {
+			case OPEN:
+				// Compared by difference, as the ticker may overflow
+				return current.time - now > 0;
+			case PROBING:
+				return now - current.time < cooldownNanos;
+			default:
+				return false;
+			}
+		}
+
+		public Admission admit(long now, long cooldownNanos) {
+			while (true) {
+				State current = state.get();
+				if (current.phase == Phase.CLOSED) {
+					return Admission.RUN;
+				} else if (isOpen(now, cooldownNanos)) {
+					return Admission.SKIP;
+				}
+
+				// The cooldown is over, or the last probe was lost, so only one document gets to probe
+				if (state.compareAndSet(current, new State(Phase.PROBING, current.overruns, now))) {
+					return Admission.PROBE;
+				}
+			}
+		}
+
+		/**
+		 * Records the outcome of a document that ran the rule
+		 */
+		public void record(boolean overrun, boolean probe, long now, int tripAfter, long cooldownNanos) {
+			while (true) {
+				State current = state.get();
+				State next;
+				if (probe) {
+					if (current.phase != Phase.PROBING) {
+						// Given up on in the meantime, another probe decides
+						return;
+					}
+
+					// One more overrun after the cooldown trips it again
+					next = overrun ? new State(Phase.OPEN, tripAfter - 1, now + cooldownNanos) : State.CLOSED;
+				} else if (current.phase != Phase.CLOSED) {
+					// Documents that started before the breaker tripped do not count
+					return;
+				} else if (!overrun) {
+					next = State.CLOSED;
+				} else if (current.overruns + 1 >= tripAfter) {
+					next = new State(Phase.OPEN, tripAfter - 1, now + cooldownNanos);
+				} else {
+					next = new State(Phase.CLOSED, current.overruns + 1, 0);
+				}
+
+				if (current == next || state.compareAndSet(current, next)) {
+					return;
+				}
+			}
+		}
+	}
+
+	private enum Phase {
+		CLOSED,
+		OPEN,
+		PROBING
+	}
+
+	private static class State {
+		private static final State CLOSED = new State(Phase.CLOSED, 0, 0);
+
+		private final Phase phase;
+		private final int overruns;
+		/**
+		 * The end of the cooldown when open, or when the probe started
+		 */
+		private final long time;
+
+		public State(Phase phase, int overruns, long time) {
+			this.phase = phase;
+			this.overruns = overruns;
+			this.time = time;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package logicanalyser;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A precompiled set of rules from a group of rulesets, grouped by the
+ * type of target each rule checks. A plan is immutable and is compiled
+ * once when rulesets are registered, so running an analysis does not
+ * need to filter or allocate anything to find its rules.
+ *
+ * The plan can also be iterated as the rulesets it was compiled from.
+ */
+public class RulePlan implements Iterable<Ruleset> {
+	/**
+	 * A plan without any rules
+	 */
+	public static final RulePlan EMPTY = new RulePlan(ImmutableList.of());
+
+	private static final Rule<?>[] NO_RULES = new Rule<?>[0];
+
+	private final List<Ruleset> rulesets;
+	private final Map<Class<?>, Rule<?>[]> rulesByTarget;
+
+	/**
+	 * Compiles a new plan
+	 * @param rulesets The rulesets to take the rules from
+	 */
+	public RulePlan(Iterable<Ruleset> rulesets) {
+		this.rulesets = ImmutableList.copyOf(rulesets);
+
+		Map<Class<?>, List<Rule<?>>> grouped = Maps.newLinkedHashMap();
+		for (Ruleset ruleset : this.rulesets) {
+			for (Rule<?> rule : ruleset.getContainedRules()) {
+				if (rule.getTarget() == null) {
+					continue;
+				}
+
+				grouped.computeIfAbsent(rule.getTarget(), type -> Lists.newArrayList()).add(rule);
+			}
+		}
+
+		ImmutableMap.Builder<Class<?>, Rule<?>[]> builder = ImmutableMap.builder();
+		for (Map.Entry<Class<?>, List<Rule<?>>> entry : grouped.entrySet()) {
+			List<Rule<?>> rules = entry.getValue();
+			builder.put(entry.getKey(), rules.toArray(new Rule<?>[rules.size()]));
+		}
+
+		rulesByTarget = builder.build();
+	}
+
+	/**
+	 * Gets the rules that accept the given type, in the order of their rulesets
+	 * @param <T> The type accepted by the rules
+	 * @param type The type accepted by the rules
+	 * @return The rules. This array is shared and must not be modified
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Rule<T>[] getRules(Class<T> type) {
+		Rule<?>[] rules = rulesByTarget.get(type);
+		if (rules == null) {
+			return (Rule<T>[])NO_RULES;
+		} else {
+			return (Rule<T>[])rules;
+		}
+	}
+
+	/**
+	 * Gets the rulesets this plan was compiled from
+	 * @return An unmodifiable list of rulesets
+	 */
+	public List<Ruleset> getRulesets() {
+		return rulesets;
+	}
+
+	@Override
+	public Iterator<Ruleset> iterator() {
+		return rulesets.iterator();
+	}
+}
@@ -0,0 +1,246 @@
+package logicanalyser;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import logicanalyser.util.HyperLogLog;
+import logicanalyser.util.QuantileSketch;
+
+/**
+ * Sums up the reports of many documents, such as every page of a site,
+ * without keeping the reports. Each report is folded in as it arrives,
+ * for example from the consumer of
+ * {@link LogicAnalyser#analyseBatch(Iterable, java.util.concurrent.Executor, int, java.util.function.Consumer)}.
+ *
+ * The markers per severity and per rule, the tags and the CSS properties
+ * are counted exactly, in longs so that no count of a large site can
+ * overflow. The number of distinct class names and selectors
+ * is estimated with a {@link HyperLogLog}, and the line lengths and element
+ * depths are kept in a {@link QuantileSketch}.
+ *
+ * The class names and selectors come from the opt-in metrics
+ * {@link logicanalyser.languages.html.ClassNames} and
+ * {@link logicanalyser.languages.css.SelectorCount}, so they are only
+ * estimated for reports produced while those metrics were registered.
+ *
+ * Summaries can be serialized, and summaries of separate shards of
+ * documents can be merged into one.
+ * This class is not safe to use from several threads at once.
+ */
+public class SiteSummary implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int DISTINCT_PRECISION = 14;
+	private static final double QUANTILE_ACCURACY = 0.01;
+
+	private long documents;
+	private final long[] severities;
+	private final Map<String, Long> rules;
+	private final Map<String, Long> tags;
+	private final Map<String, Long> properties;
+
+	private final HyperLogLog classNames;
+	private final HyperLogLog selectors;
+
+	private final QuantileSketch lineLengths;
+	private final QuantileSketch depths;
+
+	public SiteSummary() {
+		severities = new long[SeverityRating.values().length];
+		rules = Maps.newLinkedHashMap();
+		tags = Maps.newLinkedHashMap();
+		properties = Maps.newLinkedHashMap();
+
+		classNames = new HyperLogLog(DISTINCT_PRECISION);
+		selectors = new HyperLogLog(DISTINCT_PRECISION);
+
+		lineLengths = new QuantileSketch(QUANTILE_ACCURACY);
+		depths = new QuantileSketch(QUANTILE_ACCURACY);
+	}
+
+	/**
+	 * Folds the markers and metrics of one document into the summary
+	 * @param report The report of the document
+	 */
+	public void add(Report report) {
+		Preconditions.checkNotNull(report);
+		++documents;
+
+		for (Marker marker : report.getAllMarkers()) {
+			++severities[marker.getSeverity().ordinal()];
+			marker.getRuleId().ifPresent(ruleId -> add(rules, ruleId, 1));
+		}
+
+		// The metrics are looked up by the names their producers give them
+		addCounts(report.getMetric("html.tagcount"), tags);
+		addCounts(report.getMetric("css.propertycount"), properties);
+		addKeys(report.getMetric("html.classnames"), classNames);
+		addKeys(report.getMetric("css.selectors"), selectors);
+		addHistogram(report.getMetric("html.depth"), depths);
+		addLineLengths(report.getMetric("indentation"));
+	}
+
+	private static void addCounts(MetricBase metric, Map<String, Long> target) {
+		if (!(metric instanceof MetricMap)) {
+			return;
+		}
+
+		MetricMap map = (MetricMap)metric;
+		for (String key : map.getKeys()) {
+			add(target, key, map.getValue(key).get(0));
+		}
+	}
+
+	private static void add(Map<String, Long> target, String key, long count) {
+		target.merge(key, count, Long::sum);
+	}
+
+	private static void addAll(Map<String, Long> target, Map<String, Long> source) {
+		for (Map.Entry<String, Long> entry : source.entrySet()) {
+			add(target, entry.getKey(), entry.getValue());
+		}
+	}
+
+	private static void addKeys(MetricBase metric, HyperLogLog target) {
+		if (!(metric instanceof MetricMap)) {
+			return;
+		}
+
+		for (String key : ((MetricMap)metric).getKeys()) {
+			target.add(key);
+		}
+	}
+
+	/**
+	 * Adds a metric of numeric keys and the number of times each was seen
+	 */
+	private static void addHistogram(MetricBase metric, QuantileSketch target) {
+		if (!(metric instanceof MetricMap)) {
+			return;
+		}
+
+		MetricMap map = (MetricMap)metric;
+		for (String key : map.getKeys()) {
+			target.add(Long.parseLong(key), map.getValue(key).get(0));
+		}
+	}
+
+	/**
+	 * The end of the indentation metric is the width of each line without trailing whitespace
+	 */
+	private void addLineLengths(MetricBase metric) {
+		if (metric instanceof PackedMetricList) {
+			PackedMetricList list = (PackedMetricList)metric;
+			for (int i = 0; i < list.size(); ++i) {
+				lineLengths.add(list.get(i, 1));
+			}
+		} else if (metric instanceof MetricList) {
+			MetricList list = (MetricList)metric;
+			for (int i = 0; i < list.size(); ++i) {
+				lineLengths.add(list.getValue(i).get(1));
+			}
+		}
+	}
+
+	/**
+	 * Adds everything summed up by another summary, such as that of another shard
+	 * @param other The other summary, which is left unchanged
+	 */
+	public void merge(SiteSummary other) {
+		documents += other.documents;
+		for (int i = 0; i < severities.length; ++i) {
+			severities[i] += other.severities[i];
+		}
+
+		addAll(rules, other.rules);
+		addAll(tags, other.tags);
+		addAll(properties, other.properties);
+
+		classNames.merge(other.classNames);
+		selectors.merge(other.selectors);
+
+		lineLengths.merge(other.lineLengths);
+		depths.merge(other.depths);
+	}
+
+	/**
+	 * Gets the number of reports added
+	 * @return The count
+	 */
+	public long getDocumentCount() {
+		return documents;
+	}
+
+	/**
+	 * Gets the number of markers of a severity over all documents
+	 * @param severity The severity
+	 * @return The count
+	 */
+	public long getMarkerCount(SeverityRating severity) {
+		return severities[severity.ordinal()];
+	}
+
+	/**
+	 * Gets the number of markers of each rule over all documents.
+	 * Markers that were not created by a rule are left out.
+	 * @return An unmodifiable map from rule ID to count
+	 */
+	public Map<String, Long> getRuleCounts() {
+		return ImmutableMap.copyOf(rules);
+	}
+
+	/**
+	 * Gets the number of times each tag is used over all documents
+	 * @return An unmodifiable map from tag to count
+	 */
+	public Map<String, Long> getTagCounts() {
+		return ImmutableMap.copyOf(tags);
+	}
+
+	/**
+	 * Gets the number of times each CSS property is declared over all documents
+	 * @return An unmodifiable map from property to count
+	 */
+	public Map<String, Long> getPropertyCounts() {
+		return ImmutableMap.copyOf(properties);
+	}
+
+	/**
+	 * Estimates the number of distinct class names used in HTML over all documents.
+	 * Needs the {@link logicanalyser.languages.html.ClassNames} metric to be registered.
+	 * @return The estimate
+	 */
+	public long estimateDistinctClassNames() {
+		return classNames.estimate();
+	}
+
+	/**
+	 * Estimates the number of distinct CSS selectors over all documents.
+	 * Needs the {@link logicanalyser.languages.css.SelectorCount} metric to be registered.
+	 * @return The estimate
+	 */
+	public long estimateDistinctSelectors() {
+		return selectors.estimate();
+	}
+
+	/**
+	 * Gets the distribution of line lengths, with tabs as 4 columns
+	 * and without trailing whitespace
+	 * @return The sketch, which is part of this summary
+	 */
+	public QuantileSketch getLineLengths() {
+		return lineLengths;
+	}
+
+	/**
+	 * Gets the distribution of how deeply HTML elements are nested
+	 * @return The sketch, which is part of this summary
+	 */
+	public QuantileSketch getDepths() {
+		return depths;
+	}
+}
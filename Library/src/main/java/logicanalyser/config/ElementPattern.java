@@ -0,0 +1,164 @@
+package logicanalyser.config;
+
+import java.util.Locale;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A declarative HTML rule, matching elements by their tag, the attributes
+ * they have or lack, and the tag of their parent. For example, an {@code img}
+ * without an {@code alt} attribute, or a {@code form} directly inside a {@code table}.
+ *
+ * Patterns can be read from the configuration with a {@code <match>} element,
+ * or created with {@link #builder(RuleDetails)}.
+ */
+public class ElementPattern {
+	private final RuleDetails details;
+	private final String tag;
+	private final String parentTag;
+	private final Set<String> requiredAttributes;
+	private final Set<String> forbiddenAttributes;
+
+	private ElementPattern(Builder builder) {
+		this.details = builder.details;
+		this.tag = builder.tag;
+		this.parentTag = builder.parentTag;
+		this.requiredAttributes = builder.requiredAttributes.build();
+		this.forbiddenAttributes = builder.forbiddenAttributes.build();
+	}
+
+	/**
+	 * Starts a new pattern
+	 * @param details The rule id and the details of markers created by the pattern
+	 * @return The builder
+	 */
+	public static Builder builder(RuleDetails details) {
+		return new Builder(details);
+	}
+
+	/**
+	 * Gets the details of the pattern. The id of these is the rule id.
+	 * @return The details
+	 */
+	public RuleDetails getDetails() {
+		return details;
+	}
+
+	/**
+	 * Gets the tag name that the pattern matches
+	 * @return The lower case tag name
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * Gets the tag the parent of matching elements must have
+	 * @return The lower case tag name, or null if the parent does not matter
+	 */
+	public String getParentTag() {
+		return parentTag;
+	}
+
+	/**
+	 * Gets the attributes matching elements must have
+	 * @return An unmodifiable set of lower case attribute names
+	 */
+	public Set<String> getRequiredAttributes() {
+		return requiredAttributes;
+	}
+
+	/**
+	 * Gets the attributes matching elements must not have
+	 * @return An unmodifiable set of lower case attribute names
+	 */
+	public Set<String> getForbiddenAttributes() {
+		return forbiddenAttributes;
+	}
+
+	public static class Builder {
+		private final RuleDetails details;
+		private String tag;
+		private String parentTag;
+		private final ImmutableSet.Builder<String> requiredAttributes;
+		private final ImmutableSet.Builder<String> forbiddenAttributes;
+
+		private Builder(RuleDetails details) {
+			Preconditions.checkNotNull(details);
+
+			this.details = details;
+			requiredAttributes = ImmutableSet.builder();
+			forbiddenAttributes = ImmutableSet.builder();
+		}
+
+		/**
+		 * Sets the tag that matching elements have. This is required.
+		 * @param tag The tag name
+		 * @return This builder
+		 */
+		public Builder tag(String tag) {
+			this.tag = normalise(tag);
+			return this;
+		}
+
+		/**
+		 * Only matches elements whose direct parent has the given tag
+		 * @param parentTag The tag name of the parent
+		 * @return This builder
+		 */
+		public Builder insideParent(String parentTag) {
+			this.parentTag = normalise(parentTag);
+			return this;
+		}
+
+		/**
+		 * Only matches elements that have the attribute
+		 * @param attribute The attribute name
+		 * @return This builder
+		 */
+		public Builder withAttribute(String attribute) {
+			requiredAttributes.add(normalise(attribute));
+			return this;
+		}
+
+		/**
+		 * Only matches elements that do not have the attribute
+		 * @param attribute The attribute name
+		 * @return This builder
+		 */
+		public Builder withoutAttribute(String attribute) {
+			forbiddenAttributes.add(normalise(attribute));
+			return this;
+		}
+
+		/**
+		 * Creates the pattern
+		 * @return The pattern
+		 * @throws IllegalStateException Thrown if no tag was set, or an attribute
+		 * 		is both required and forbidden
+		 */
+		public ElementPattern build() throws IllegalStateException {
+			Preconditions.checkState(tag != null, "A tag is required");
+
+			ElementPattern pattern = new ElementPattern(this);
+			for (String attribute : pattern.requiredAttributes) {
+				Preconditions.checkState(
+					!pattern.forbiddenAttributes.contains(attribute),
+					"Attribute %s is both required and forbidden", attribute
+				);
+			}
+
+			return pattern;
+		}
+
+		private static String normalise(String name) {
+			Preconditions.checkNotNull(name);
+			Preconditions.checkArgument(!name.trim().isEmpty());
+
+			// HTML names are matched in lower case, the same as the parser produces
+			return name.trim().toLowerCase(Locale.ROOT);
+		}
+	}
+}
@@ -1,18 +1,29 @@
 package logicanalyser.config;
 
+import java.util.List;
 import java.util.Map;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 import logicanalyser.Rule;
 
+/**
+ * Holds the configured details of each rule, by rule id.
+ * The details are kept in an immutable map that is replaced when 
+ * details are added, so the configuration can be read by many analyses
+ * at the same time as it is being changed.
+ */
 public class RuleConfiguration {
 	public static final RuleConfiguration DEFAULT = new RuleConfiguration();
 	
-	private final Map<String, RuleDetails> details;
+	private volatile Map<String, RuleDetails> details;
+	private volatile List<ElementPattern> patterns;
 	
 	public RuleConfiguration() {
-		details = Maps.newHashMap();
+		details = ImmutableMap.of();
+		patterns = ImmutableList.of();
 	}
 	
 	public RuleDetails forRule(String id) {
@@ -23,7 +34,30 @@ public class RuleConfiguration {
 		return forRule(rule.getRuleName());
 	}
 	
-	public void add(RuleDetails details) {
-		this.details.put(details.id, details);
+	public synchronized void add(RuleDetails details) {
+		Map<String, RuleDetails> copy = Maps.newHashMap(this.details);
+		copy.put(details.id, details);
+		this.details = ImmutableMap.copyOf(copy);
+	}
+	
+	/**
+	 * Adds a declarative element rule. Its details are also added.
+	 * @param pattern The pattern
+	 */
+	public synchronized void add(ElementPattern pattern) {
+		add(pattern.getDetails());
+		
+		patterns = ImmutableList.<ElementPattern>builder()
+			.addAll(patterns)
+			.add(pattern)
+			.build();
+	}
+	
+	/**
+	 * Gets the declarative element rules in the order they were added
+	 * @return An unmodifiable list of patterns
+	 */
+	public List<ElementPattern> getElementPatterns() {
+		return patterns;
 	}
 }
@@ -63,7 +63,15 @@ public class XMLConfigLoader {
 			
 			NodeList rules = document.getElementsByTagName("rule");
 			for (int i = 0; i < rules.getLength(); ++i) {
-				config.add(parseRule((Element)rules.item(i)));
+				Element ruleElement = (Element)rules.item(i);
+				RuleDetails details = parseRule(ruleElement);
+				
+				NodeList matchNode = ruleElement.getElementsByTagName("match");
+				if (matchNode.getLength() > 0) {
+					config.add(parseMatch(details, (Element)matchNode.item(0)));
+				} else {
+					config.add(details);
+				}
 			}
 			
 			return config;
@@ -122,4 +130,36 @@ public class XMLConfigLoader {
 		
 		return new RuleDetails(id, description, rating, url, suggestion);
 	}
+	
+	private ElementPattern parseMatch(RuleDetails details, Element matchElement) throws SAXException {
+		ElementPattern.Builder builder = ElementPattern.builder(details)
+			.tag(matchElement.getAttribute("tag"));
+		
+		if (matchElement.hasAttribute("parent")) {
+			builder.insideParent(matchElement.getAttribute("parent"));
+		}
+		
+		for (String attribute : splitNames(matchElement.getAttribute("with"))) {
+			builder.withAttribute(attribute);
+		}
+		
+		for (String attribute : splitNames(matchElement.getAttribute("without"))) {
+			builder.withoutAttribute(attribute);
+		}
+		
+		try {
+			return builder.build();
+		} catch (IllegalStateException e) {
+			throw new SAXException("Invalid match for rule " + details.id, e);
+		}
+	}
+	
+	private static String[] splitNames(String names) {
+		String trimmed = names.trim();
+		if (trimmed.isEmpty()) {
+			return new String[0];
+		} else {
+			return trimmed.split("\\s+");
+		}
+	}
 }
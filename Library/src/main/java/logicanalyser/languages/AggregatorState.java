@@ -0,0 +1,44 @@
+package logicanalyser.languages;
+
+import com.google.common.base.Preconditions;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricBase;
+
+/**
+ * The state of one aggregator during a single analysis, or a single
+ * run of targets of that analysis
+ * @param <T> The type of target
+ * @param <S> The type of the state
+ */
+class AggregatorState<T, S> {
+	private final MetricAggregator<T, S> aggregator;
+	private S state;
+
+	public AggregatorState(MetricAggregator<T, S> aggregator) {
+		this.aggregator = aggregator;
+		this.state = aggregator.createState();
+	}
+
+	public MetricAggregator<T, S> getAggregator() {
+		return aggregator;
+	}
+
+	public void accumulate(MetricContext context, T target) {
+		aggregator.accumulate(state, context, target);
+	}
+
+	/**
+	 * Merges in the state of the run of targets that comes straight after this one
+	 * @param next The later state of the same aggregator, which is not used again
+	 */
+	@SuppressWarnings("unchecked")
+	public void merge(AggregatorState<T, ?> next) {
+		Preconditions.checkArgument(next.aggregator == aggregator);
+		state = aggregator.merge(state, (S)next.state);
+	}
+
+	public MetricBase finish(MetricContext context) {
+		return aggregator.finish(context, state);
+	}
+}
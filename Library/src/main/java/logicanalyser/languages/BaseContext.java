@@ -6,20 +6,82 @@ import com.google.common.collect.Lists;
 
 import logicanalyser.Interval;
 import logicanalyser.Marker;
+import logicanalyser.MetricBase;
+import logicanalyser.MetricMap;
+import logicanalyser.MetricSingle;
+import logicanalyser.MetricValue;
 import logicanalyser.Rule;
+import logicanalyser.RuleBudget;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.config.RuleConfiguration;
+import logicanalyser.config.RuleDetails;
+import logicanalyser.util.ObjectIntCounter;
 
 public abstract class BaseContext implements Context {
 	private final List<Marker> markers;
 	private final RuleConfiguration details;
 	
+	/**
+	 * The markers added so far, counted as they are added
+	 */
+	private final int[] severityCounts;
+	private final ObjectIntCounter<String> ruleCounts;
+	
 	private Rule<?> currentRule;
+	private RuleBudget.Usage budget;
+	
+	private List<RecordedMarker> recording;
+	private boolean recordingComplete;
+	
+	private Object visited;
+	private int visitedOrdinal = -1;
 	
 	public BaseContext(RuleConfiguration details) {
 		this.details = details;
 		markers = Lists.newArrayList();
+		severityCounts = new int[SeverityRating.values().length];
+		ruleCounts = new ObjectIntCounter<>();
+		budget = RuleBudget.UNLIMITED.startDocument();
+	}
+	
+	/**
+	 * Sets the time budget that rules checked through {@link #check(Rule, Object)} are held to
+	 * @param budget The usage of the document being analysed
+	 */
+	public void setBudget(RuleBudget.Usage budget) {
+		this.budget = budget;
+	}
+	
+	public RuleBudget.Usage getBudget() {
+		return budget;
+	}
+	
+	/**
+	 * Checks a target with a rule, making it the current rule.
+	 * Rules that have gone over their time budget are not called, and
+	 * an informational marker is added when a rule is stopped.
+	 * @param rule The rule
+	 * @param target The target to check
+	 */
+	public <T> void check(Rule<T> rule, T target) {
+		setRule(rule);
+		
+		if (!budget.isTracking()) {
+			rule.check(this, target);
+			return;
+		}
+		
+		RuleBudget.RuleUsage usage = budget.forRule(rule);
+		if (!usage.isStopped()) {
+			long start = budget.now();
+			rule.check(this, target);
+			usage.charge(budget.now() - start);
+		}
+		
+		if (usage.claimNotice()) {
+			store(usage.createNotice(new Interval(0, 1)));
+		}
 	}
 	
 	public List<Marker> getMarkers() {
@@ -28,27 +90,140 @@ public abstract class BaseContext implements Context {
 	
 	@Override
 	public void addMarker(Marker marker) {
-		markers.add(marker);
+		if (recording != null) {
+			// Cannot be placed on another target later
+			recordingComplete = false;
+		}
+		
+		store(marker);
 	}
 	
 	@Override
 	public void addMarker(Object target) {
-		Interval location = locate(target);
-		Details info = getDetails();
-		String locationDetails = generateLocationInfo(target, location);
-		
-		Marker marker = new Marker(location, info, locationDetails);
-		markers.add(marker);
+		addMarker(target, currentRule.getRuleName(), getDetails());
 	}
 	
 	@Override
 	public void addMarker(Object target, String overrideId) {
+		addMarker(target, overrideId, getDetails(overrideId));
+	}
+	
+	@Override
+	public void addMarker(Object target, RuleDetails ruleDetails) {
+		Details configured = details.forRule(ruleDetails.id);
+		addMarker(target, ruleDetails.id, configured == null ? ruleDetails : configured);
+	}
+	
+	/**
+	 * Creates and adds a marker for the target with the given details
+	 * @param target The target that was the cause of the marker
+	 * @param ruleId The ID of the rule the marker belongs to
+	 * @param info The details of the marker
+	 */
+	protected void addMarker(Object target, String ruleId, Details info) {
 		Interval location = locate(target);
-		Details info = getDetails(overrideId);
 		String locationDetails = generateLocationInfo(target, location);
 		
 		Marker marker = new Marker(location, info, locationDetails);
+		marker.setRuleId(ruleId);
+		describeTarget(marker, target);
+		store(marker);
+		
+		if (recording != null) {
+			recording.add(new RecordedMarker(target, ruleId, info));
+		}
+	}
+	
+	private void store(Marker marker) {
 		markers.add(marker);
+		
+		++severityCounts[marker.getSeverity().ordinal()];
+		if (marker.getRuleId().isPresent()) {
+			ruleCounts.increment(marker.getRuleId().get());
+		}
+	}
+	
+	/**
+	 * Gets the number of markers of a severity added so far
+	 * @param severity The severity
+	 * @return The count
+	 */
+	public int getMarkerCount(SeverityRating severity) {
+		return severityCounts[severity.ordinal()];
+	}
+	
+	/**
+	 * Gets the number of markers of a rule added so far
+	 * @param ruleId The ID of the rule
+	 * @return The count
+	 */
+	public int getMarkerCount(String ruleId) {
+		return ruleCounts.get(ruleId);
+	}
+	
+	/**
+	 * Creates the metrics of the markers added so far: the number of
+	 * errors, including critical errors, the number of warnings, and the
+	 * number of markers of each rule
+	 * @return The metrics
+	 */
+	public List<MetricBase> generateMarkerMetrics() {
+		int errors = getMarkerCount(SeverityRating.Error) + getMarkerCount(SeverityRating.CriticalError);
+		int warnings = getMarkerCount(SeverityRating.Warning);
+		
+		return Lists.newArrayList(
+			new MetricSingle("errorcount", new MetricValue(errors)),
+			new MetricSingle("warningcount", new MetricValue(warnings)),
+			new MetricMap("rulecount", ruleCounts.toMap(MetricValue::new))
+		);
+	}
+	
+	/**
+	 * Adds what is known about the target to a marker created for it.
+	 * Does nothing by default.
+	 * @param marker The new marker
+	 * @param target The target of the marker
+	 */
+	protected void describeTarget(Marker marker, Object target) {
+	}
+	
+	/**
+	 * Sets the target that is being checked and its position in document
+	 * order, so that markers on it can refer to it
+	 * @param target The target
+	 * @param ordinal The position of the target
+	 */
+	void setVisited(Object target, int ordinal) {
+		visited = target;
+		visitedOrdinal = ordinal;
+	}
+	
+	/**
+	 * Gets the position of a target in document order
+	 * @param target The target
+	 * @return The position, or -1 if the target is not the one being checked
+	 */
+	protected int ordinalOf(Object target) {
+		return target == visited ? visitedOrdinal : -1;
+	}
+	
+	/**
+	 * Starts remembering the targets and details of added markers
+	 */
+	void startRecording() {
+		recording = Lists.newArrayList();
+		recordingComplete = true;
+	}
+	
+	/**
+	 * Stops remembering added markers
+	 * @return The markers added since recording started, or null if
+	 * 		some of them were added as a finished {@link Marker}
+	 */
+	List<RecordedMarker> stopRecording() {
+		List<RecordedMarker> recorded = recordingComplete ? recording : null;
+		recording = null;
+		return recorded;
 	}
 	
 	protected Details getDetails(String id) {
@@ -64,9 +239,13 @@ public abstract class BaseContext implements Context {
 	}
 	
 	protected Details getDetails() {
-		Details information = details.forRule(currentRule);
+		return getDetails(currentRule);
+	}
+	
+	protected Details getDetails(Rule<?> rule) {
+		Details information = details.forRule(rule);
 		if (information == null) {
-			return currentRule.defaultDetails();
+			return rule.defaultDetails();
 		} else {
 			return information;
 		}
@@ -79,4 +258,19 @@ public abstract class BaseContext implements Context {
 	public void setRule(Rule<?> currentRule) {
 		this.currentRule = currentRule;
 	}
+	
+	/**
+	 * The target and details of a marker, from which it can be created again
+	 */
+	static class RecordedMarker {
+		final Object target;
+		final String ruleId;
+		final Details details;
+		
+		public RecordedMarker(Object target, String ruleId, Details details) {
+			this.target = target;
+			this.ruleId = ruleId;
+			this.details = details;
+		}
+	}
 }
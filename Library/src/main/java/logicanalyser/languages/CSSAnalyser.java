@@ -1,21 +1,29 @@
 package logicanalyser.languages;
 
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.net.MediaType;
 import com.helger.css.CSSSourceArea;
 import com.helger.css.CSSSourceLocation;
 import com.helger.css.ECSSVersion;
 import com.helger.css.ICSSSourceLocationAware;
 import com.helger.css.decl.CSSDeclaration;
+import com.helger.css.decl.CSSFontFaceRule;
+import com.helger.css.decl.CSSImportRule;
+import com.helger.css.decl.CSSKeyframesRule;
+import com.helger.css.decl.CSSMediaRule;
+import com.helger.css.decl.CSSPageRule;
+import com.helger.css.decl.CSSSelector;
 import com.helger.css.decl.CSSStyleRule;
+import com.helger.css.decl.CSSSupportsRule;
 import com.helger.css.decl.CascadingStyleSheet;
 import com.helger.css.decl.ICSSExpressionMember;
 import com.helger.css.reader.CSSReader;
@@ -25,26 +33,38 @@ import logicanalyser.InvalidContentException;
 import logicanalyser.LogicAnalyser;
 import logicanalyser.Marker;
 import logicanalyser.MetricBase;
-import logicanalyser.MetricSingle;
-import logicanalyser.MetricValue;
+import logicanalyser.MetricProducer;
 import logicanalyser.Report;
 import logicanalyser.Rule;
+import logicanalyser.RuleBudget;
+import logicanalyser.RulePlan;
 import logicanalyser.Ruleset;
 import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.css.DeclarationValue;
 import logicanalyser.languages.css.LanguageBreakdown;
 import logicanalyser.languages.css.PropertyCount;
+import logicanalyser.languages.css.SelectorComplexity;
+import logicanalyser.languages.css.SelectorInfo;
+import logicanalyser.util.LineIndex;
 
 public class CSSAnalyser extends LanguageBase {
 	private static final Set<Class<?>> ACCEPTED_RULE_TYPES = ImmutableSet.of(
 		String.class, 
 		CascadingStyleSheet.class, 
 		CSSStyleRule.class, 
-		CSSDeclaration.class
+		CSSDeclaration.class,
+		CSSMediaRule.class,
+		CSSSupportsRule.class,
+		CSSImportRule.class,
+		CSSFontFaceRule.class,
+		CSSPageRule.class,
+		CSSKeyframesRule.class
 	);
 	
 	public CSSAnalyser() {
 		registerMetric(new LanguageBreakdown());
 		registerMetric(new PropertyCount());
+		registerMetric(new SelectorComplexity());
 	}
 	
 	@Override
@@ -72,87 +92,72 @@ public class CSSAnalyser extends LanguageBase {
 			throw new InvalidContentException("Cannot interpret as CSS");
 		}
 		
-		List<Marker> markers = generateMarkers(stylesheet, content, rulesets, analyser);
-		List<MetricBase> metrics = generateMetrics(stylesheet, content, markers);
-		metrics.addAll(generateMarkerMetrics(markers));
+		// Shared by the rule and metric contexts
+		LineIndex lineIndex = new LineIndex(content);
+		// Selectors are compared by identity, equal selectors can be at different places
+		Map<CSSSelector, SelectorInfo> selectors = Maps.newIdentityHashMap();
 		
-		return new Report(metrics, markers);
-	}
-	
-	private List<Marker> generateMarkers(CascadingStyleSheet stylesheet, String content, Iterable<Ruleset> rulesets, LogicAnalyser analyser) {
-		CSSContext context = new CSSContext(content, analyser.getRuleConfiguration());
+		RuleBudget.Usage budget = startBudget(analyser);
+		CSSContext context = new CSSContext(content, lineIndex, selectors, analyser.getRuleConfiguration());
+		context.setBudget(budget);
+		CSSMetricContext metricContext = new CSSMetricContext(content, lineIndex, selectors, stylesheet, context.getMarkers());
+		RulePlan plan = toPlan(rulesets);
 		
-		Iterable<Rule<CSSStyleRule>> styleRules = Collections.emptyList();
-		Iterable<Rule<CSSDeclaration>> propertyRules = Collections.emptyList();
+		for (Rule<String> rule : plan.getRules(String.class)) {
+			context.check(rule, content);
+		}
 		
-		for (Ruleset ruleset : rulesets) {
-			for (Rule<String> rule : ruleset.getRulesUsing(String.class)) {
-				context.setRule(rule);
-				rule.check(context, content);
-			}
-			
-			for (Rule<CascadingStyleSheet> rule : ruleset.getRulesUsing(CascadingStyleSheet.class)) {
-				context.setRule(rule);
-				rule.check(context, stylesheet);
+		for (Rule<CascadingStyleSheet> rule : plan.getRules(CascadingStyleSheet.class)) {
+			context.check(rule, stylesheet);
+		}
+		
+		// All other rules and metrics share a single walk of the stylesheet
+		StylesheetWalker walker = new StylesheetWalker(context, metricContext, plan, this);
+		Collection<MetricProducer<CascadingStyleSheet>> stylesheetProducers = getMetricProducersFor(CascadingStyleSheet.class);
+		Set<MetricProducer<CascadingStyleSheet>> aggregated = Sets.newHashSet();
+		for (MetricProducer<CascadingStyleSheet> producer : stylesheetProducers) {
+			if (walker.subscribe(producer)) {
+				aggregated.add(producer);
 			}
-			
-			styleRules = Iterables.concat(styleRules, ruleset.getRulesUsing(CSSStyleRule.class));
-			propertyRules = Iterables.concat(propertyRules, ruleset.getRulesUsing(CSSDeclaration.class));
 		}
 		
-		for (CSSStyleRule cssRule : stylesheet.getAllStyleRules()) {
-			for (Rule<CSSStyleRule> rule : styleRules) {
-				context.setRule(rule);
-				rule.check(context, cssRule);
+		walker.walk(stylesheet);
+		budget.finish();
+		
+		List<Marker> markers = context.getMarkers();
+		List<MetricBase> metrics = generateMetrics(metricContext, content);
+		
+		for (MetricProducer<CascadingStyleSheet> producer : stylesheetProducers) {
+			MetricBase metric;
+			if (aggregated.contains(producer)) {
+				metric = walker.finish(producer);
+			} else {
+				metric = producer.produce(metricContext, stylesheet);
 			}
 			
-			for (CSSDeclaration declaration : cssRule.getAllDeclarations()) {
-				for (Rule<CSSDeclaration> rule : propertyRules) {
-					context.setRule(rule);
-					rule.check(context, declaration);
-				}
+			if (metric != null) {
+				metrics.add(metric);
 			}
 		}
 		
-		return context.getMarkers();
-	}
-	
-	private List<MetricBase> generateMetrics(CascadingStyleSheet stylesheet, String content, List<Marker> markers) {
-		List<MetricBase> metrics = Lists.newArrayList();
-		
-		CSSMetricContext context = new CSSMetricContext(content, stylesheet, markers);
+		metrics.addAll(walker.getTargetMetrics());
+		metrics.addAll(context.generateMarkerMetrics());
 		
-		metrics.addAll(generateMetrics(context, content));
-		metrics.addAll(generateMetrics(context, stylesheet));
-		
-		return metrics;
+		return new Report(metrics, markers);
 	}
 	
-	private List<MetricBase> generateMarkerMetrics(List<Marker> markers) {
-		List<MetricBase> metrics = Lists.newArrayList();
-		int errors = 0;
-		int warnings = 0;
-		
-		for (Marker marker : markers) {
-			switch (marker.getSeverity()) {
-			case Warning:
-				++warnings;
-				break;
-			case Error:
-			case CriticalError:
-				++errors;
-				break;
-			default:
-				break;
-			} 
+	/**
+	 * Uses the given rulesets as a plan, only compiling them if they
+	 * were not already compiled by {@link #compileRules(Iterable)}
+	 */
+	private RulePlan toPlan(Iterable<Ruleset> rulesets) {
+		if (rulesets instanceof RulePlan) {
+			return (RulePlan)rulesets;
+		} else {
+			return compileRules(rulesets);
 		}
-		
-		metrics.add(new MetricSingle("errorcount", new MetricValue(errors)));
-		metrics.add(new MetricSingle("warningcount", new MetricValue(warnings)));
-		
-		return metrics;
 	}
-
+	
 	@Override
 	public boolean canRulesAccept(Class<?> type) {
 		return ACCEPTED_RULE_TYPES.contains(type);
@@ -163,15 +168,30 @@ public class CSSAnalyser extends LanguageBase {
 		return ICSSSourceLocationAware.class;
 	}
 	
-	private static class CSSContext extends BaseContext {
+	private static class CSSContext extends BaseContext implements CSSRuleContext {
 		private final String content;
-		private final String[] lines;
+		private final LineIndex lineIndex;
+		private final Map<CSSDeclaration, DeclarationValue> values;
+		private final Map<CSSSelector, SelectorInfo> selectors;
 		
-		public CSSContext(String content, RuleConfiguration details) {
+		public CSSContext(String content, LineIndex lineIndex, Map<CSSSelector, SelectorInfo> selectors, RuleConfiguration details) {
 			super(details);
 			
 			this.content = content;
-			this.lines = content.split("\n");
+			this.lineIndex = lineIndex;
+			this.selectors = selectors;
+			// Declarations are compared by identity, equal declarations can be at different places
+			values = Maps.newIdentityHashMap();
+		}
+		
+		@Override
+		public DeclarationValue getValue(CSSDeclaration declaration) {
+			return values.computeIfAbsent(declaration, DeclarationValue::new);
+		}
+		
+		@Override
+		public SelectorInfo getSelectorInfo(CSSSelector selector) {
+			return selectors.computeIfAbsent(selector, SelectorInfo::new);
 		}
 		
 		@Override
@@ -236,26 +256,33 @@ public class CSSAnalyser extends LanguageBase {
 		}
 		
 		private int toCharacterPosition(int line, int column) {
-			int index = 0;
-			for (int i = 0; i < line - 1; ++i) {
-				index += lines[i].length() + 1; // +1 for newline
-			}
-			
-			index += column - 1;
-			return index;
+			// The parser counts lines and columns from 1
+			return lineIndex.toOffset(line - 1, column - 1);
 		}
 	}
 	
 	public class CSSMetricContext implements MetricContext {
 		private final String content;
-		private final String[] lines;
+		private final LineIndex lineIndex;
+		private final Map<CSSSelector, SelectorInfo> selectors;
 		private final List<Marker> markers;
 		
-		public CSSMetricContext(String content, CascadingStyleSheet stylesheet, List<Marker> markers) {
+		private String[] lines;
+		
+		public CSSMetricContext(String content, LineIndex lineIndex, Map<CSSSelector, SelectorInfo> selectors, CascadingStyleSheet stylesheet, List<Marker> markers) {
 			this.content = content;
+			this.lineIndex = lineIndex;
+			this.selectors = selectors;
 			this.markers = markers;
-			
-			lines = content.split("\n");
+		}
+		
+		/**
+		 * Gets the specificity and member counts of a selector, shared with the rules
+		 * @param selector The selector
+		 * @return The information
+		 */
+		public SelectorInfo getSelectorInfo(CSSSelector selector) {
+			return selectors.computeIfAbsent(selector, SelectorInfo::new);
 		}
 		
 		@Override
@@ -275,12 +302,21 @@ public class CSSAnalyser extends LanguageBase {
 
 		@Override
 		public String[] getLines() {
+			if (lines == null) {
+				lines = lineIndex.toLines();
+			}
+			
 			return lines;
 		}
 
 		@Override
 		public int getLineCount() {
-			return lines.length;
+			return lineIndex.getLineCount();
+		}
+		
+		@Override
+		public LineIndex getLineIndex() {
+			return lineIndex;
 		}
 
 		@Override
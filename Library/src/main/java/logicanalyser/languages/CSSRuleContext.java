@@ -0,0 +1,29 @@
+package logicanalyser.languages;
+
+import com.helger.css.decl.CSSDeclaration;
+import com.helger.css.decl.CSSSelector;
+
+import logicanalyser.languages.css.DeclarationValue;
+import logicanalyser.languages.css.SelectorInfo;
+
+/**
+ * The context given to CSS rules. It holds information about the
+ * stylesheet that is shared between all rules of an analysis.
+ */
+public interface CSSRuleContext extends Context {
+	/**
+	 * Gets the parsed value of a declaration.
+	 * The value is only parsed the first time it is requested.
+	 * @param declaration The declaration
+	 * @return The value
+	 */
+	DeclarationValue getValue(CSSDeclaration declaration);
+	
+	/**
+	 * Gets the specificity and member counts of a selector.
+	 * These are only worked out the first time they are requested.
+	 * @param selector The selector
+	 * @return The information
+	 */
+	SelectorInfo getSelectorInfo(CSSSelector selector);
+}
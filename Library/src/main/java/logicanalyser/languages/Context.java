@@ -2,6 +2,7 @@ package logicanalyser.languages;
 
 import logicanalyser.Interval;
 import logicanalyser.Marker;
+import logicanalyser.config.RuleDetails;
 
 /**
  * Provides a way to produce markers given some target.
@@ -31,6 +32,23 @@ public interface Context {
 	 */
 	void addMarker(Object target, String overrideId);
 	
+	/**
+	 * Creates and adds a new marker for the given target under the ID of the details.
+	 * The marker information will be loaded from the configuration using
+	 * that ID, falling back to the given details.
+	 * This lets one rule report for several others, such as compiled rule tables.
+	 * The default implementation only loads the marker information from
+	 * the configuration, as {@link #addMarker(Object, String)} does.
+	 * 
+	 * @param target The target that was the cause of the marker.
+	 * @param details The ID and default information of the marker
+	 * @throws IllegalArgumentException Thrown if the target is not of an 
+	 * 		accepted type
+	 */
+	default void addMarker(Object target, RuleDetails details) {
+		addMarker(target, details.id);
+	}
+	
 	/**
 	 * Finds the location of the given target
 	 * @param target The target to find
@@ -0,0 +1,154 @@
+package logicanalyser.languages;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import com.google.common.collect.Sets;
+
+import logicanalyser.Rule;
+
+/**
+ * A cheap, lexical check of which attributes an HTML source could contain.
+ * The raw source is searched rather than the parsed tree, so answers may be
+ * true for names that only appear in text, comments or scripts. They are
+ * never false for an attribute the parser will produce.
+ *
+ * The source is read a single time for all the names of interest, in a pass
+ * of its own before the parse. It is split into runs the way the HTML tokenizer
+ * ends an attribute name, so names such as {@code @click} or {@code [x]} are
+ * found like any other.
+ */
+class DocumentCensus {
+	private final Set<String> wanted;
+	private final Set<String> found;
+
+	/**
+	 * Searches the source for the given attribute names
+	 * @param content The HTML source
+	 * @param attributes The lower case attribute names of interest
+	 */
+	public DocumentCensus(String content, Set<String> attributes) {
+		wanted = Sets.newHashSet();
+		for (String attribute : attributes) {
+			if (isSearchable(attribute)) {
+				wanted.add(attribute);
+			}
+		}
+		found = Sets.newHashSet();
+
+		search(content);
+	}
+
+	/**
+	 * Checks if the rule could fire on this document, given the attributes it requires
+	 * @param rule The rule
+	 * @return False if the rule can be skipped
+	 */
+	public boolean mayApply(Rule<?> rule) {
+		Set<String> requiredAttributes = rule.getRequiredAttributes();
+		if (requiredAttributes == null || requiredAttributes.isEmpty()) {
+			return true;
+		}
+
+		for (String attribute : requiredAttributes) {
+			if (mayContainAttribute(attribute)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks if any element of the parsed document could have an attribute
+	 * @param attribute The lower case attribute name
+	 * @return False if no element certainly has the attribute. Always true
+	 * 		for names that were not searched for
+	 */
+	public boolean mayContainAttribute(String attribute) {
+		return found.contains(attribute) || !wanted.contains(attribute);
+	}
+
+	/**
+	 * Finds the wanted names ignoring case, as whole runs between separators
+	 */
+	private void search(String content) {
+		if (wanted.isEmpty()) {
+			return;
+		}
+
+		// The wanted names by length, so each run is only compared to names that fit
+		int longest = 0;
+		for (String name : wanted) {
+			longest = Math.max(longest, name.length());
+		}
+
+		String[][] byLength = new String[longest + 1][];
+		for (String name : wanted) {
+			String[] names = byLength[name.length()];
+			if (names == null) {
+				byLength[name.length()] = new String[] {name};
+			} else {
+				names = Arrays.copyOf(names, names.length + 1);
+				names[names.length - 1] = name;
+				byLength[name.length()] = names;
+			}
+		}
+
+		int i = 0;
+		while (i < content.length() && found.size() < wanted.size()) {
+			if (isSeparator(content.charAt(i))) {
+				++i;
+				continue;
+			}
+
+			int start = i;
+			while (i < content.length() && !isSeparator(content.charAt(i))) {
+				++i;
+			}
+
+			int length = i - start;
+			if (length < byLength.length && byLength[length] != null) {
+				for (String name : byLength[length]) {
+					if (content.regionMatches(true, start, name, 0, length)) {
+						found.add(name);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The tokenizer ends an attribute name at whitespace, '/', '>' or '='. Quotes
+	 * and '<' also separate runs here, since a name may directly follow a quoted
+	 * value or the start of a tag, even though the tokenizer keeps them in a name.
+	 */
+	private static boolean isSeparator(char c) {
+		switch (c) {
+		case '\t': case '\n': case '\f': case '\r': case ' ':
+		case '/': case '>': case '=':
+		case '"': case '\'': case '<':
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Names containing a separator can not be found as a whole run, so they are
+	 * never pruned
+	 */
+	private static boolean isSearchable(String name) {
+		if (name.isEmpty()) {
+			return false;
+		}
+
+		for (int i = 0; i < name.length(); ++i) {
+			if (isSeparator(name.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
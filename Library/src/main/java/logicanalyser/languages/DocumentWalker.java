@@ -0,0 +1,165 @@
+package logicanalyser.languages;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricBase;
+import logicanalyser.MetricProducer;
+import logicanalyser.Rule;
+
+/**
+ * Walks an HTML document a single time, handing every element to the
+ * element rules for its tag and each subscribed aggregator.
+ * Elements are visited in the same order as {@code document.select("*")}.
+ *
+ * The element metric producers are run on the visited elements once the
+ * walk is done, so that they see every marker of the rules, the same as
+ * when they ran on the finished document.
+ */
+class DocumentWalker implements NodeVisitor {
+	private final BaseContext context;
+	private final MetricContext metricContext;
+
+	private final ElementRuleTable rules;
+	private final Collection<MetricProducer<Element>> producers;
+	private final Map<MetricProducer<?>, AggregatorState<Element, ?>> subscriptions;
+
+	private final List<MetricBase> elementMetrics;
+	/**
+	 * The visited elements, only kept if there are element metric producers
+	 */
+	private final List<Element> visitedElements;
+	
+	private SubtreeMemo memo;
+	private int elementIndex;
+
+	public DocumentWalker(BaseContext context, MetricContext metricContext, ElementRuleTable rules, Collection<MetricProducer<Element>> producers) {
+		this.context = context;
+		this.metricContext = metricContext;
+		this.rules = rules;
+		this.producers = producers;
+
+		subscriptions = Maps.newLinkedHashMap();
+		elementMetrics = Lists.newArrayList();
+		visitedElements = Lists.newArrayList();
+	}
+
+	/**
+	 * Subscribes the producer to the walk if it aggregates elements
+	 * @param producer The producer
+	 * @return True if the producer will be fed the elements
+	 */
+	public boolean subscribe(MetricProducer<?> producer) {
+		MetricAggregator<Element, ?> aggregator = asElementAggregator(producer);
+		if (aggregator == null) {
+			return false;
+		}
+
+		subscriptions.put(producer, new AggregatorState<>(aggregator));
+		return true;
+	}
+
+	/**
+	 * Gets a producer as an aggregator of elements
+	 * @param producer The producer
+	 * @return The aggregator, or null if the producer does not aggregate elements
+	 */
+	@SuppressWarnings("unchecked")
+	static MetricAggregator<Element, ?> asElementAggregator(MetricProducer<?> producer) {
+		if (!(producer instanceof MetricAggregator)) {
+			return null;
+		}
+
+		// The aggregated type is checked, so the cast is safe
+		MetricAggregator<?, ?> aggregator = (MetricAggregator<?, ?>)producer;
+		if (aggregator.getAggregatedType() != Element.class) {
+			return null;
+		}
+
+		return (MetricAggregator<Element, ?>)aggregator;
+	}
+
+	/**
+	 * Lets pure rules reuse their markers for repeated subtrees
+	 * @param memo The memo of the document that will be walked
+	 */
+	public void useMemo(SubtreeMemo memo) {
+		this.memo = memo;
+	}
+	
+	/**
+	 * Walks the tree starting at the root
+	 * @param root The root, usually the document
+	 */
+	public void walk(Node root) {
+		NodeTraversor.traverse(this, root);
+
+		for (Element element : visitedElements) {
+			for (MetricProducer<Element> producer : producers) {
+				MetricBase metric = producer.produce(metricContext, element);
+				if (metric != null) {
+					elementMetrics.add(metric);
+				}
+			}
+		}
+		visitedElements.clear();
+	}
+
+	/**
+	 * Finishes the metric of a subscribed producer
+	 * @param producer The subscribed producer
+	 * @return The metric
+	 */
+	public MetricBase finish(MetricProducer<?> producer) {
+		return subscriptions.get(producer).finish(metricContext);
+	}
+
+	/**
+	 * Retrieves the metrics produced by the element metric producers
+	 * @return The metrics in document order
+	 */
+	public List<MetricBase> getElementMetrics() {
+		return elementMetrics;
+	}
+
+	@Override
+	public void head(Node node, int depth) {
+		if (!(node instanceof Element)) {
+			return;
+		}
+
+		Element element = (Element)node;
+		int index = elementIndex++;
+		context.setVisited(element, index);
+
+		for (Rule<Element> rule : rules.rulesFor(element.tagName())) {
+			if (memo != null && rule.isPure()) {
+				memo.check(rule, index, context);
+			} else {
+				context.check(rule, element);
+			}
+		}
+
+		if (!producers.isEmpty()) {
+			visitedElements.add(element);
+		}
+
+		for (AggregatorState<Element, ?> subscription : subscriptions.values()) {
+			subscription.accumulate(metricContext, element);
+		}
+	}
+
+	@Override
+	public void tail(Node node, int depth) {
+	}
+}
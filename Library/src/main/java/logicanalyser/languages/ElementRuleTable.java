@@ -0,0 +1,135 @@
+package logicanalyser.languages;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jsoup.nodes.Element;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import logicanalyser.Rule;
+
+/**
+ * A dispatch table from tag names to the element rules that can fire on them.
+ * Rules that do not declare any target tags are included for every tag.
+ * The rules for each tag keep the order they were given in.
+ */
+final class ElementRuleTable {
+	private final Rule<Element>[] wildcardRules;
+	private final Map<String, Rule<Element>[]> rulesByTag;
+	private final boolean hasPureRules;
+	private final boolean hasPureWildcardRules;
+	private final Set<String> pureTags;
+	
+	public ElementRuleTable(Iterable<Rule<Element>> rules) {
+		Set<String> tags = Sets.newHashSet();
+		boolean pure = false;
+		for (Rule<Element> rule : rules) {
+			tags.addAll(targetTagsOf(rule));
+			pure |= rule.isPure();
+		}
+		hasPureRules = pure;
+		
+		wildcardRules = filter(rules, null);
+		hasPureWildcardRules = containsPure(wildcardRules);
+		
+		ImmutableMap.Builder<String, Rule<Element>[]> builder = ImmutableMap.builder();
+		ImmutableSet.Builder<String> pureTagsBuilder = ImmutableSet.builder();
+		for (String tag : tags) {
+			Rule<Element>[] tagRules = filter(rules, tag);
+			builder.put(tag, tagRules);
+			if (containsPure(tagRules)) {
+				pureTagsBuilder.add(tag);
+			}
+		}
+		rulesByTag = builder.build();
+		pureTags = pureTagsBuilder.build();
+	}
+	
+	/**
+	 * Retrieves the rules that should be checked for an element
+	 * @param tagName The tag name of the element
+	 * @return The rules, in their original order. The array must not be modified
+	 */
+	public Rule<Element>[] rulesFor(String tagName) {
+		Rule<Element>[] rules = rulesByTag.get(tagName);
+		if (rules == null) {
+			return wildcardRules;
+		} else {
+			return rules;
+		}
+	}
+	
+	/**
+	 * Checks if there are no rules at all in this table
+	 * @return True if no element has rules to check
+	 */
+	public boolean isEmpty() {
+		return wildcardRules.length == 0 && rulesByTag.isEmpty();
+	}
+	
+	/**
+	 * Checks if any rule in this table is pure, see {@link Rule#isPure()}
+	 * @return True if there is a pure rule
+	 */
+	public boolean hasPureRules() {
+		return hasPureRules;
+	}
+	
+	/**
+	 * Checks if any rule that should be checked for an element is pure
+	 * @param tagName The tag name of the element
+	 * @return True if there is a pure rule for the element
+	 */
+	public boolean hasPureRulesFor(String tagName) {
+		if (rulesByTag.containsKey(tagName)) {
+			return pureTags.contains(tagName);
+		} else {
+			return hasPureWildcardRules;
+		}
+	}
+	
+	private static boolean containsPure(Rule<Element>[] rules) {
+		for (Rule<Element> rule : rules) {
+			if (rule.isPure()) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static Rule<Element>[] filter(Iterable<Rule<Element>> rules, String tag) {
+		List<Rule<Element>> filtered = Lists.newArrayList();
+		for (Rule<Element> rule : rules) {
+			Set<String> targetTags = targetTagsOf(rule);
+			if (targetTags.isEmpty() || (tag != null && targetTags.contains(tag))) {
+				filtered.add(rule);
+			}
+		}
+		
+		return toArray(filtered);
+	}
+	
+	/**
+	 * Arrays of a generic type cannot be created, but the array only ever holds
+	 * element rules and is never handed out as anything else
+	 */
+	@SuppressWarnings("unchecked")
+	private static Rule<Element>[] toArray(List<Rule<Element>> rules) {
+		return (Rule<Element>[])rules.toArray(new Rule<?>[rules.size()]);
+	}
+	
+	private static Set<String> targetTagsOf(Rule<?> rule) {
+		Set<String> tags = rule.getTargetTags();
+		if (tags == null) {
+			return ImmutableSet.of();
+		}
+		
+		return tags;
+	}
+}
@@ -1,47 +1,84 @@
 package logicanalyser.languages;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.net.MediaType;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+
 import logicanalyser.Interval;
 import logicanalyser.InvalidContentException;
 import logicanalyser.LogicAnalyser;
 import logicanalyser.Marker;
+import logicanalyser.MetricAggregator;
 import logicanalyser.MetricBase;
 import logicanalyser.MetricProducer;
-import logicanalyser.MetricSingle;
-import logicanalyser.MetricValue;
 import logicanalyser.Report;
 import logicanalyser.Rule;
+import logicanalyser.RuleBudget;
+import logicanalyser.RulePlan;
 import logicanalyser.Ruleset;
 import logicanalyser.config.RuleConfiguration;
 import logicanalyser.languages.html.*;
+import logicanalyser.util.LineIndex;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
-import org.jsoup.nodes.TextNode;
 import org.jsoup.parser.Parser;
 
 public class HTMLAnalyser extends LanguageBase {
 	private static final MediaType ACCEPTED_TYPE = MediaType.HTML_UTF_8;
 	private static final Set<Class<?>> ACCEPTED_RULE_TYPES = ImmutableSet.of(String.class, Document.class, Element.class);
 	
+	private static final HTMLRulePlan EMPTY_PLAN = new HTMLRulePlan(ImmutableList.of());
+	
+	private volatile ParallelElementRules parallelRules;
+	
 	public HTMLAnalyser() {
 		registerMetric(new TagCounter());
 		registerMetric(new TagTypes());
+		registerMetric(new ElementDepth());
 		registerMetric(new LanguageBreakdown());
 	}
 	
+	/**
+	 * Checks the element rules of large documents on several threads.
+	 * The markers are identical to those of a serial check. Only enable this 
+	 * when every element rule is thread safe and only reads the document.
+	 * Element aggregators are fed on the same threads, other metrics are
+	 * produced on the calling thread.
+	 * 
+	 * The calling thread always takes part in the check, so the executor
+	 * may be the bounded pool the documents themselves are analysed on,
+	 * such as one from {@link logicanalyser.BatchExecutors#fixed(int)}.
+	 * @param sizeThreshold The minimum number of characters in a document before it is checked in parallel
+	 * @param executor The executor that runs the helping threads
+	 * @param parallelism The number of threads expected to work on one document, including the calling thread
+	 */
+	public void enableParallelRules(int sizeThreshold, Executor executor, int parallelism) {
+		parallelRules = new ParallelElementRules(sizeThreshold, executor, parallelism);
+	}
+	
+	/**
+	 * Returns to checking every document on the calling thread
+	 */
+	public void disableParallelRules() {
+		parallelRules = null;
+	}
+	
 	@Override
 	public String getName() {
 		return "HTML";
@@ -73,106 +110,150 @@ public class HTMLAnalyser extends LanguageBase {
 			throw new InvalidContentException("Cannot interpret as HTML");
 		}
 		
-		List<Marker> markers = generateMarkers(document, content, rulesets, analyser);
-		List<MetricBase> metrics = generateMetrics(document, content, markers);
-		metrics.addAll(generateMarkerMetrics(markers));
+		RuleConfiguration configuration = analyser.getRuleConfiguration();
+		RuleBudget.Usage budget = startBudget(analyser);
+		ElementContext context = new ElementContext(content, document, configuration);
+		context.setBudget(budget);
+		HTMLMetricContext metricContext = new HTMLMetricContext(context.getMarkers(), document, content);
 		
-		Report report = new Report(metrics, markers);
-		return report;
-	}
-	
-	@Override
-	public Class<Element> getContextType() {
-		return Element.class;
-	}
-	
-	private List<Marker> generateMarkers(Document document, String content, Iterable<Ruleset> rulesets, LogicAnalyser analyser) {
-		Iterable<Rule<Element>> allElementRules = Collections.emptyList();
-		ElementContext context = new ElementContext(content, document, analyser.getRuleConfiguration());
+		HTMLRulePlan plan = toPlan(rulesets);
+		checkDocumentRules(document, content, plan, context);
+		// Rules that need attributes the document does not have are left out
+		ElementRuleTable elementRules = plan.getElementRules(content);
 		
-		for (Ruleset ruleset : rulesets) {
-			allElementRules = Iterables.concat(allElementRules, ruleset.getRulesUsing(Element.class));
-			Iterable<Rule<Document>> documentRules = ruleset.getRulesUsing(Document.class);
-			Iterable<Rule<String>> rawRules = ruleset.getRulesUsing(String.class);
-			
-			for (Rule<Document> rule : documentRules) {
-				context.setRule(rule);
-				rule.check(context, document);
+		Collection<MetricProducer<Document>> documentProducers = getMetricProducersFor(Document.class);
+		
+		// Element aggregators run with the chunks, and their states are merged
+		Map<MetricAggregator<?, ?>, AggregatorState<Element, ?>> chunkStates = Collections.emptyMap();
+		ParallelElementRules parallel = parallelRules;
+		if (parallel != null && !elementRules.isEmpty() && parallel.appliesTo(content.length())) {
+			List<MetricAggregator<Element, ?>> aggregators = Lists.newArrayList();
+			for (MetricProducer<Document> producer : documentProducers) {
+				MetricAggregator<Element, ?> aggregator = DocumentWalker.asElementAggregator(producer);
+				if (aggregator != null) {
+					aggregators.add(aggregator);
+				}
 			}
 			
-			for (Rule<String> rule : rawRules) {
-				context.setRule(rule);
-				rule.check(context, content);
+			List<AggregatorState<Element, ?>> states = parallel.check(document.getAllElements(), elementRules, () -> {
+				ElementContext chunkContext = new ElementContext(content, document, configuration);
+				chunkContext.setBudget(budget);
+				return chunkContext;
+			}, context, metricContext, aggregators);
+			
+			chunkStates = Maps.newHashMap();
+			for (AggregatorState<Element, ?> state : states) {
+				chunkStates.put(state.getAggregator(), state);
 			}
+			
+			elementRules = EMPTY_PLAN.getElementRules();
 		}
 		
-		// So we dont have to traverse the tree for each ruleset, we do it here for all rulesets
-		for (Element element : document.select("*")) {
-			for (Rule<Element> rule : allElementRules) {
-				context.setRule(rule);
-				rule.check(context, element);
-			}
+		// All element rules and element aggregators share a single walk of the tree
+		DocumentWalker walker = new DocumentWalker(context, metricContext, elementRules, getMetricProducersFor(Element.class));
+		SubtreeMemo memo = null;
+		if (elementRules.hasPureRules()) {
+			memo = new SubtreeMemo(document, elementRules);
+			walker.useMemo(memo);
 		}
 		
-		return context.getMarkers();
-	}
-	
-	private List<MetricBase> generateMetrics(Document document, String content, List<Marker> markers) {
-		List<MetricBase> metrics = Lists.newArrayList();
+		Set<MetricProducer<Document>> aggregated = Sets.newHashSet();
+		for (MetricProducer<Document> producer : documentProducers) {
+			if (!chunkStates.containsKey(producer) && walker.subscribe(producer)) {
+				aggregated.add(producer);
+			}
+		}
 		
-		HTMLMetricContext context = new HTMLMetricContext(markers, document, content);
+		walker.walk(document);
+		budget.finish();
 		
-		metrics.addAll(generateMetrics(context, content));
-		metrics.addAll(generateMetrics(context, document));
+		List<Marker> markers = context.getMarkers();
+		List<MetricBase> metrics = generateMetrics(metricContext, content);
 		
-		Collection<MetricProducer<Element>> elementMetrics = getMetricProducersFor(Element.class);
-		if (!elementMetrics.isEmpty()) {
-			for (Element element : document.select("*")) {
-				for (MetricProducer<Element> producer : elementMetrics) {
-					MetricBase metric = producer.produce(context, element);
-					if (metric != null) {
-						metrics.add(metric);
-					}
-				}
+		for (MetricProducer<Document> producer : documentProducers) {
+			MetricBase metric;
+			if (chunkStates.containsKey(producer)) {
+				metric = chunkStates.get(producer).finish(metricContext);
+			} else if (aggregated.contains(producer)) {
+				metric = walker.finish(producer);
+			} else {
+				metric = producer.produce(metricContext, document);
+			}
+			
+			if (metric != null) {
+				metrics.add(metric);
 			}
 		}
 		
-		return metrics;
+		metrics.addAll(walker.getElementMetrics());
+		if (memo != null) {
+			metrics.add(memo.toMetric("html.subtreecache"));
+		}
+		metrics.addAll(context.generateMarkerMetrics());
+		
+		Report report = new Report(metrics, markers);
+		return report;
 	}
 	
-	private List<MetricBase> generateMarkerMetrics(List<Marker> markers) {
-		List<MetricBase> metrics = Lists.newArrayList();
-		int errors = 0;
-		int warnings = 0;
-		
-		for (Marker marker : markers) {
-			switch (marker.getSeverity()) {
-			case Warning:
-				++warnings;
-				break;
-			case Error:
-			case CriticalError:
-				++errors;
-				break;
-			default:
-				break;
-			} 
+	@Override
+	public Class<Element> getContextType() {
+		return Element.class;
+	}
+	
+	@Override
+	public RulePlan compileRules(Iterable<Ruleset> rulesets) {
+		return new HTMLRulePlan(rulesets);
+	}
+	
+	/**
+	 * Uses the given rulesets as a plan, only compiling them if they
+	 * were not already compiled by {@link #compileRules(Iterable)}
+	 */
+	private HTMLRulePlan toPlan(Iterable<Ruleset> rulesets) {
+		if (rulesets instanceof HTMLRulePlan) {
+			return (HTMLRulePlan)rulesets;
+		} else if (Iterables.isEmpty(rulesets)) {
+			return EMPTY_PLAN;
+		} else {
+			return new HTMLRulePlan(rulesets);
+		}
+	}
+	
+	/**
+	 * Checks the document and raw content rules
+	 */
+	private void checkDocumentRules(Document document, String content, RulePlan plan, BaseContext context) {
+		for (Rule<Document> rule : plan.getRules(Document.class)) {
+			context.check(rule, document);
 		}
 		
-		metrics.add(new MetricSingle("errorcount", new MetricValue(errors)));
-		metrics.add(new MetricSingle("warningcount", new MetricValue(warnings)));
-		
-		return metrics;
+		for (Rule<String> rule : plan.getRules(String.class)) {
+			context.check(rule, content);
+		}
 	}
 	
-	private class ElementContext extends BaseContext {
+	private class ElementContext extends BaseContext implements HTMLRuleContext {
 		private final String content;
 		private final Document document;
+		private final ElementStructure structure;
 		
 		public ElementContext(String content, Document document, RuleConfiguration details) {
 			super(details);
 			this.content = content;
 			this.document = document;
+			this.structure = new ElementStructure();
+		}
+		
+		@Override
+		public ElementStructure getStructure() {
+			return structure;
+		}
+		
+		@Override
+		protected void describeTarget(Marker marker, Object target) {
+			if (target instanceof Element && !(target instanceof Document)) {
+				marker.setElement(((Element)target).tagName(), ordinalOf(target));
+			}
 		}
 		
 		@Override
@@ -221,101 +302,67 @@ public class HTMLAnalyser extends LanguageBase {
 		private final String content;
 		private final Document doc;
 		
-		private final String[] lines;
-		private final int[] lineStarts;
+		private final LineIndex lineIndex;
+		
+		private String[] lines;
+		private NodeIndex nodeIndex;
+		private LanguageRegions languageRegions;
 		
 		public HTMLMetricContext(List<Marker> markers, Document doc, String content) {
 			this.markers = markers;
 			this.doc = doc;
 			this.content = content;
 			
-			lines = content.split("\n");
-			lineStarts = new int[lines.length];
-			int offset = 0;
-			for (int i = 0; i < lines.length; ++i) {
-				String line = lines[i];
-				lineStarts[i] = offset;
-				offset += line.length() + 1;
-			}
+			lineIndex = new LineIndex(content);
 		}
 		
 		public int getIndexOfLine(int line) {
-			return lineStarts[line];
+			return lineIndex.getLineStart(line);
 		}
 		
-		public Node getNodeAt(int index) {
-			List<Node> toSearch = doc.childNodes();
-			
-			Node best = null;
-			while (!toSearch.isEmpty()) {
-				Node last = null;
-				Node target = null;
-				for (Node node : toSearch) {
-					if (index < node.position().start) {
-						if (last == null) {
-							target = node;
-						} else {
-							target = last;
-						}
-						break;
-					} else if (index < node.position().end) {
-						target = node;
-						break;
-					}
-					last = node;
-				}
-				
-				if (target == null) {
-					target = last;
-				}
-				
-				best = target;
-				if (target.childNodeSize() > 0) {
-					toSearch = target.childNodes();
-				} else {
-					break;
-				}
+		/**
+		 * Gets the index of the nodes in the document, creating it on first use.
+		 * The lazy parts are synchronized, as aggregators of parallel chunks share this context.
+		 * @return The node index
+		 */
+		public synchronized NodeIndex getNodeIndex() {
+			if (nodeIndex == null) {
+				nodeIndex = new NodeIndex(doc);
 			}
 			
-			if (best != null) {
-				return best;
+			return nodeIndex;
+		}
+		
+		public Node getNodeAt(int index) {
+			Node found = getNodeIndex().getNodeAt(index);
+			if (found != null) {
+				return found;
 			} else {
 				return doc.childNode(0);
 			}
 		}
 		
-		private MediaType getLanguage(Node node) {
-			if (node instanceof TextNode) {
-				if (node.parent() instanceof Element) {
-					Element parent = (Element)node.parent();
-					if (parent.tagName().equals("script")) {
-						if (parent.hasAttr("type")) {
-							try {
-								return MediaType.parse(parent.attr("type"));
-							} catch (IllegalArgumentException e) {
-							}
-						}
-						
-						return MediaType.JAVASCRIPT_UTF_8;
-					} else if (parent.tagName().equals("style")) {
-						return MediaType.CSS_UTF_8;
-					}
-				}
+		/**
+		 * Gets the ranges of other languages in the document, creating them on first use
+		 * @return The language regions
+		 */
+		public synchronized LanguageRegions getLanguageRegions() {
+			if (languageRegions == null) {
+				languageRegions = new LanguageRegions(getNodeIndex());
 			}
 			
-			return MediaType.HTML_UTF_8;
+			return languageRegions;
 		}
 		
 		@Override
 		public MediaType getLanguageAt(int index) {
-			Node node = getNodeAt(index);
-			return getLanguage(node);
+			return getLanguageRegions().getLanguageAt(index);
 		}
 
 		@Override
 		public MediaType getLanguageAtLine(int line) {
 			int start = getIndexOfLine(line);
-			int length = lines[line].length();
+			int length = lineIndex.getLineLength(line);
 			
 			return getLanguageAt(start + length / 2);
 		}
@@ -326,13 +373,22 @@ public class HTMLAnalyser extends LanguageBase {
 		}
 
 		@Override
-		public String[] getLines() {
+		public synchronized String[] getLines() {
+			if (lines == null) {
+				lines = lineIndex.toLines();
+			}
+			
 			return lines;
 		}
 
 		@Override
 		public int getLineCount() {
-			return lines.length;
+			return lineIndex.getLineCount();
+		}
+		
+		@Override
+		public LineIndex getLineIndex() {
+			return lineIndex;
 		}
 
 		@Override
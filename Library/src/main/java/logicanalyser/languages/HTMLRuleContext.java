@@ -0,0 +1,16 @@
+package logicanalyser.languages;
+
+import logicanalyser.languages.html.ElementStructure;
+
+/**
+ * The context given to HTML rules. It holds information about the
+ * document that is shared between all rules of an analysis.
+ */
+public interface HTMLRuleContext extends Context {
+	/**
+	 * Gets the structural queries for the document being analysed.
+	 * Rules should use these instead of running selectors on each element.
+	 * @return The structure
+	 */
+	ElementStructure getStructure();
+}
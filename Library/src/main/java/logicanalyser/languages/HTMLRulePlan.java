@@ -0,0 +1,117 @@
+package logicanalyser.languages;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jsoup.nodes.Element;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import logicanalyser.Rule;
+import logicanalyser.RulePlan;
+import logicanalyser.Ruleset;
+
+/**
+ * A rule plan that also holds the tag dispatch table for the element rules.
+ *
+ * Element rules that require attributes can be dropped for documents that
+ * do not contain any of them. Rules that target tags are not dropped, as
+ * the dispatch table never calls them for documents without their tags.
+ * The tables without the dropped rules are kept for the combinations that
+ * were seen most recently.
+ */
+class HTMLRulePlan extends RulePlan {
+	/**
+	 * The most pruned tables kept at once
+	 */
+	private static final int MAX_PRUNED_TABLES = 32;
+	
+	private final Rule<Element>[] rules;
+	private final ElementRuleTable elementRules;
+	
+	/**
+	 * Indexes of the rules that require attributes
+	 */
+	private final int[] optionalRules;
+	private final Set<String> requiredAttributes;
+	private final Cache<BitSet, ElementRuleTable> prunedTables;
+
+	public HTMLRulePlan(Iterable<Ruleset> rulesets) {
+		super(rulesets);
+
+		rules = getRules(Element.class);
+		elementRules = new ElementRuleTable(Arrays.asList(rules));
+		
+		List<Integer> optional = Lists.newArrayList();
+		ImmutableSet.Builder<String> attributes = ImmutableSet.builder();
+		for (int i = 0; i < rules.length; ++i) {
+			Set<String> required = rules[i].getRequiredAttributes();
+			if (required != null && !required.isEmpty()) {
+				optional.add(i);
+				attributes.addAll(required);
+			}
+		}
+		
+		optionalRules = new int[optional.size()];
+		for (int i = 0; i < optionalRules.length; ++i) {
+			optionalRules[i] = optional.get(i);
+		}
+		requiredAttributes = attributes.build();
+		
+		prunedTables = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PRUNED_TABLES)
+			.build();
+	}
+
+	public ElementRuleTable getElementRules() {
+		return elementRules;
+	}
+	
+	/**
+	 * Gets the element rules without those that cannot fire on a document
+	 * @param content The HTML source of the document
+	 * @return The dispatch table
+	 */
+	public ElementRuleTable getElementRules(String content) {
+		if (optionalRules.length == 0) {
+			return elementRules;
+		}
+		
+		DocumentCensus census = new DocumentCensus(content, requiredAttributes);
+		BitSet dropped = new BitSet(optionalRules.length);
+		for (int i = 0; i < optionalRules.length; ++i) {
+			if (!census.mayApply(rules[optionalRules[i]])) {
+				dropped.set(i);
+			}
+		}
+		
+		if (dropped.isEmpty()) {
+			return elementRules;
+		}
+		
+		ElementRuleTable table = prunedTables.getIfPresent(dropped);
+		if (table == null) {
+			// Another thread may build the same table, either one can be used
+			table = createPrunedTable(dropped);
+			prunedTables.put(dropped, table);
+		}
+		
+		return table;
+	}
+	
+	private ElementRuleTable createPrunedTable(BitSet dropped) {
+		List<Rule<Element>> kept = Lists.newArrayList(rules);
+		for (int i = optionalRules.length - 1; i >= 0; --i) {
+			if (dropped.get(i)) {
+				kept.remove(optionalRules[i]);
+			}
+		}
+		
+		return new ElementRuleTable(kept);
+	}
+}
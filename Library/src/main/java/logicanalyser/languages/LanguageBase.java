@@ -1,20 +1,22 @@
 package logicanalyser.languages;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.SetMultimap;
 import com.google.common.net.MediaType;
 
 import logicanalyser.InvalidContentException;
 import logicanalyser.LogicAnalyser;
+import logicanalyser.MetricAggregator;
 import logicanalyser.MetricBase;
 import logicanalyser.MetricProducer;
 import logicanalyser.Report;
+import logicanalyser.RuleBudget;
+import logicanalyser.RulePlan;
 import logicanalyser.Ruleset;
 import logicanalyser.languages.general.*;
 
@@ -22,10 +24,19 @@ import logicanalyser.languages.general.*;
  * Represents a language that can be processed by the system.
  */
 public abstract class LanguageBase {
-	private SetMultimap<Class<?>, MetricProducer<?>> metricProducers;
+	/**
+	 * The largest piece of the content that is given to an aggregator of String at once
+	 */
+	public static final int CONTENT_PIECE_SIZE = 8192;
+	
+	/**
+	 * Replaced as a whole when a metric is registered, so that
+	 * analyses running at the same time can read it without locking
+	 */
+	private volatile ImmutableSetMultimap<Class<?>, MetricProducer<?>> metricProducers;
 	
 	public LanguageBase() {
-		metricProducers = HashMultimap.create();
+		metricProducers = ImmutableSetMultimap.of();
 		
 		// Register the general ones
 		registerMetric(new Indentation());
@@ -56,6 +67,7 @@ public abstract class LanguageBase {
 	 * @param contentType The MIME type of the content.
 	 * @param content The content itself.
 	 * @param rulesets The Rulesets that will be checked. These must be rulesets for this language.
+	 * 		This may be a plan from {@link #compileRules(Iterable)}, which avoids compiling the rules again.
 	 * @param analyser The LogicAnalyser instance that ran this
 	 * @return A Report of all issues with the content, and all the statistics of the content.
 	 * @throws IllegalArgumentException Thrown if the {@code contentType} is not valid. See {@link #doesAccept(MediaType)}
@@ -63,6 +75,31 @@ public abstract class LanguageBase {
 	 */
 	public abstract Report process(MediaType contentType, String content, Iterable<Ruleset> rulesets, LogicAnalyser analyser) throws IllegalArgumentException, InvalidContentException;
 	
+	/**
+	 * Compiles the rulesets into a plan that can be given to 
+	 * {@link #process(MediaType, String, Iterable, LogicAnalyser)} in place of the rulesets.
+	 * Languages may return a subclass of {@link RulePlan} holding extra precompiled data.
+	 * @param rulesets The rulesets for this language
+	 * @return The compiled plan
+	 */
+	public RulePlan compileRules(Iterable<Ruleset> rulesets) {
+		return new RulePlan(rulesets);
+	}
+	
+	/**
+	 * Starts tracking the time rules spend on one piece of content
+	 * @param analyser The LogicAnalyser instance running the analysis
+	 * @return The usage, to give to the rule contexts and finish once all rules have run
+	 */
+	protected RuleBudget.Usage startBudget(LogicAnalyser analyser) {
+		RuleBudget budget = analyser.getRuleBudget();
+		if (budget == null) {
+			budget = RuleBudget.UNLIMITED;
+		}
+		
+		return budget.startDocument();
+	}
+	
 	/**
 	 * Checks if a rule can use the given type as their target
 	 * @param type The type to use
@@ -83,7 +120,7 @@ public abstract class LanguageBase {
 	 * 		or does not have an accepted target type as check 
 	 * 		with {@link #canRulesAccept(Class)}
 	 */
-	public void registerMetric(MetricProducer<?> producer) throws IllegalArgumentException {
+	public synchronized void registerMetric(MetricProducer<?> producer) throws IllegalArgumentException {
 		Preconditions.checkNotNull(producer);
 		Preconditions.checkArgument(canRulesAccept(producer.getTarget()));
 		
@@ -93,15 +130,25 @@ public abstract class LanguageBase {
 			.anyMatch(p -> p.getMetricName().equals(producer.getMetricName()))
 		);
 		
-		metricProducers.put(producer.getTarget(), producer);
+		metricProducers = ImmutableSetMultimap.<Class<?>, MetricProducer<?>>builder()
+			.putAll(metricProducers)
+			.put(producer.getTarget(), producer)
+			.build();
 	}
 	
 	/**
 	 * Deregisters a metric
 	 * @param producer The producer for the metric
 	 */
-	public void deregisterMetric(MetricProducer<?> producer) {
-		metricProducers.remove(producer.getTarget(), producer);
+	public synchronized void deregisterMetric(MetricProducer<?> producer) {
+		ImmutableSetMultimap.Builder<Class<?>, MetricProducer<?>> builder = ImmutableSetMultimap.builder();
+		for (Map.Entry<Class<?>, MetricProducer<?>> entry : metricProducers.entries()) {
+			if (entry.getValue() != producer) {
+				builder.put(entry);
+			}
+		}
+		
+		metricProducers = builder.build();
 	}
 	
 	/**
@@ -110,11 +157,13 @@ public abstract class LanguageBase {
 	 * @return An unmodifiable collection of the producers
 	 */
 	public <T> Collection<MetricProducer<T>> getMetricProducersFor(Class<T> type) {
-		return Collections.unmodifiableCollection((Collection)metricProducers.get(type));
+		return (Collection)metricProducers.get(type);
 	}
 	
 	/**
-	 * Produce metrics for the given target
+	 * Produce metrics for the given target.
+	 * Aggregators of String are fed a String target as consecutive pieces
+	 * of at most {@link #CONTENT_PIECE_SIZE} characters instead.
 	 * @param context The context
 	 * @param target The target
 	 * @return A list of produced metrics
@@ -124,7 +173,14 @@ public abstract class LanguageBase {
 		
 		List<MetricBase> metrics = Lists.newArrayListWithExpectedSize(producers.size());
 		for (MetricProducer<Object> producer : producers) {
-			MetricBase metric = producer.produce(context, target);
+			MetricAggregator<String, ?> aggregator = target instanceof String ? asContentAggregator(producer) : null;
+			MetricBase metric;
+			if (aggregator != null) {
+				metric = aggregateContent(context, aggregator, (String)target);
+			} else {
+				metric = producer.produce(context, target);
+			}
+			
 			if (metric != null) {
 				metrics.add(metric);
 			}
@@ -132,4 +188,29 @@ public abstract class LanguageBase {
 		
 		return metrics;
 	}
+	
+	/**
+	 * Gets the producer as an aggregator of String, if it is one
+	 */
+	@SuppressWarnings("unchecked")
+	private static MetricAggregator<String, ?> asContentAggregator(MetricProducer<?> producer) {
+		if (producer instanceof MetricAggregator
+			&& ((MetricAggregator<?, ?>)producer).getAggregatedType() == String.class) {
+			return (MetricAggregator<String, ?>)producer;
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Feeds the content to the aggregator in consecutive pieces
+	 */
+	private static MetricBase aggregateContent(MetricContext context, MetricAggregator<String, ?> aggregator, String content) {
+		AggregatorState<String, ?> state = new AggregatorState<>(aggregator);
+		for (int start = 0; start < content.length(); start += CONTENT_PIECE_SIZE) {
+			state.accumulate(context, content.substring(start, Math.min(content.length(), start + CONTENT_PIECE_SIZE)));
+		}
+		
+		return state.finish(context);
+	}
 }
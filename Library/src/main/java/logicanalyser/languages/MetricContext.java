@@ -5,6 +5,7 @@ import java.util.List;
 import com.google.common.net.MediaType;
 
 import logicanalyser.Marker;
+import logicanalyser.util.LineIndex;
 
 public interface MetricContext {
 	MediaType getLanguageAt(int index);
@@ -12,9 +13,24 @@ public interface MetricContext {
 	
 	String getContent();
 	
+	/**
+	 * Gets the content split into lines.
+	 * This creates the strings on first use, so prefer {@link #getLineIndex()}
+	 * @return The same lines as {@code getContent().split("\n")}
+	 */
 	String[] getLines();
 	
 	int getLineCount();
 	
+	/**
+	 * Gets the line index of the content, shared by everything in the analysis.
+	 * The analysers share a single index. This default indexes the content
+	 * again on every call, so other contexts should override it too.
+	 * @return The line index
+	 */
+	default LineIndex getLineIndex() {
+		return new LineIndex(getContent());
+	}
+	
 	List<Marker> getMarkers();
 }
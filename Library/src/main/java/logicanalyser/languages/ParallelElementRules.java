@@ -0,0 +1,177 @@
+package logicanalyser.languages;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.jsoup.nodes.Element;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+
+import logicanalyser.Marker;
+import logicanalyser.MetricAggregator;
+import logicanalyser.Rule;
+
+/**
+ * Checks the element rules of a document on several threads.
+ * The elements are split into contiguous chunks that each collect markers
+ * into their own context. The chunks are then merged in document order,
+ * so the markers end up in exactly the order a serial walk produces.
+ *
+ * Element aggregators are fed each chunk into their own state as well,
+ * and the states of the chunks are merged in the same order.
+ *
+ * The calling thread checks chunks too, and the tasks given to the
+ * executor only help it along. A chunk is only waited for once a thread
+ * has started on it, so the executor can be the same bounded pool that
+ * the documents are analysed on.
+ */
+class ParallelElementRules {
+	/**
+	 * Chunks per unit of parallelism, so uneven chunks still balance out
+	 */
+	private static final int CHUNKS_PER_WORKER = 4;
+	
+	private final int sizeThreshold;
+	private final Executor executor;
+	private final int parallelism;
+	
+	public ParallelElementRules(int sizeThreshold, Executor executor, int parallelism) {
+		Preconditions.checkArgument(sizeThreshold >= 0);
+		Preconditions.checkNotNull(executor);
+		Preconditions.checkArgument(parallelism > 0);
+		
+		this.sizeThreshold = sizeThreshold;
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Checks if content of the given size should be checked in parallel
+	 * @param contentLength The number of characters in the document
+	 * @return True if the size reaches the threshold
+	 */
+	public boolean appliesTo(int contentLength) {
+		return contentLength >= sizeThreshold;
+	}
+	
+	/**
+	 * Checks every element against its rules and feeds it to the aggregators
+	 * @param elements The elements in document order
+	 * @param rules The rules to apply
+	 * @param contexts Creates an empty context for each chunk
+	 * @param target The context receiving all markers
+	 * @param metricContext The context given to the aggregators, which must be safe to use from several threads
+	 * @param aggregators The aggregators of elements
+	 * @return The merged state of each aggregator, in the same order
+	 */
+	public List<AggregatorState<Element, ?>> check(List<Element> elements, ElementRuleTable rules, Supplier<BaseContext> contexts, BaseContext target,
+		MetricContext metricContext, List<MetricAggregator<Element, ?>> aggregators) {
+		int chunkSize = Math.max(1, (elements.size() + parallelism * CHUNKS_PER_WORKER - 1) / (parallelism * CHUNKS_PER_WORKER));
+		List<List<Element>> partitions = Lists.partition(elements, chunkSize);
+		
+		List<CompletableFuture<Chunk>> chunks = Lists.newArrayListWithCapacity(partitions.size());
+		for (int i = 0; i < partitions.size(); ++i) {
+			chunks.add(new CompletableFuture<>());
+		}
+		
+		AtomicInteger nextChunk = new AtomicInteger();
+		Runnable worker = () -> {
+			for (int i = nextChunk.getAndIncrement(); i < partitions.size(); i = nextChunk.getAndIncrement()) {
+				try {
+					chunks.get(i).complete(checkChunk(partitions.get(i), i * chunkSize, rules, contexts.get(), metricContext, aggregators));
+				} catch (Throwable e) {
+					chunks.get(i).completeExceptionally(e);
+				}
+			}
+		};
+		
+		for (int i = 1; i < Math.min(parallelism, partitions.size()); ++i) {
+			try {
+				executor.execute(worker);
+			} catch (RejectedExecutionException e) {
+				// The calling thread checks whatever is left
+				break;
+			}
+		}
+		
+		// Only chunks that a thread has already claimed are waited for, so
+		// helpers still queued on a busy executor cannot block the caller
+		worker.run();
+		
+		List<AggregatorState<Element, ?>> states = null;
+		for (CompletableFuture<Chunk> future : chunks) {
+			Chunk chunk;
+			try {
+				chunk = future.join();
+			} catch (CompletionException e) {
+				// Rethrow what the rule threw, the same as the serial path would
+				Throwables.propagateIfPossible(e.getCause());
+				throw e;
+			}
+			
+			for (Marker marker : chunk.markers) {
+				target.addMarker(marker);
+			}
+			
+			if (states == null) {
+				states = chunk.states;
+			} else {
+				for (int i = 0; i < states.size(); ++i) {
+					states.get(i).merge(chunk.states.get(i));
+				}
+			}
+		}
+		
+		if (states == null) {
+			states = createStates(aggregators);
+		}
+		
+		return states;
+	}
+	
+	private static Chunk checkChunk(List<Element> elements, int start, ElementRuleTable rules, BaseContext context,
+		MetricContext metricContext, List<MetricAggregator<Element, ?>> aggregators) {
+		List<AggregatorState<Element, ?>> states = createStates(aggregators);
+		
+		for (int i = 0; i < elements.size(); ++i) {
+			Element element = elements.get(i);
+			context.setVisited(element, start + i);
+			
+			for (Rule<Element> rule : rules.rulesFor(element.tagName())) {
+				context.check(rule, element);
+			}
+			
+			for (AggregatorState<Element, ?> state : states) {
+				state.accumulate(metricContext, element);
+			}
+		}
+		
+		return new Chunk(context.getMarkers(), states);
+	}
+	
+	private static List<AggregatorState<Element, ?>> createStates(List<MetricAggregator<Element, ?>> aggregators) {
+		List<AggregatorState<Element, ?>> states = Lists.newArrayListWithCapacity(aggregators.size());
+		for (MetricAggregator<Element, ?> aggregator : aggregators) {
+			states.add(new AggregatorState<>(aggregator));
+		}
+		
+		return states;
+	}
+	
+	private static class Chunk {
+		private final List<Marker> markers;
+		private final List<AggregatorState<Element, ?>> states;
+		
+		public Chunk(List<Marker> markers, List<AggregatorState<Element, ?>> states) {
+			this.markers = markers;
+			this.states = states;
+		}
+	}
+}
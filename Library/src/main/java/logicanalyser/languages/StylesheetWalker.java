@@ -0,0 +1,167 @@
+package logicanalyser.languages;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.helger.css.decl.CSSDeclaration;
+import com.helger.css.decl.CSSFontFaceRule;
+import com.helger.css.decl.CSSImportRule;
+import com.helger.css.decl.CSSKeyframesRule;
+import com.helger.css.decl.CSSMediaRule;
+import com.helger.css.decl.CSSPageRule;
+import com.helger.css.decl.CSSStyleRule;
+import com.helger.css.decl.CSSSupportsRule;
+import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.decl.visit.CSSVisitor;
+import com.helger.css.decl.visit.DefaultCSSVisitor;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricBase;
+import logicanalyser.MetricProducer;
+import logicanalyser.Rule;
+import logicanalyser.RulePlan;
+
+/**
+ * Walks a stylesheet a single time, including the rules nested in
+ * {@code @media} and {@code @supports}. Every style rule, every declaration
+ * of a style rule and every at-rule is handed to the rules for its type,
+ * each metric producer for its type and each subscribed aggregator.
+ *
+ * Targets are visited in source order. The declarations of a style rule
+ * are visited straight after the style rule.
+ */
+class StylesheetWalker extends DefaultCSSVisitor {
+	private final BaseContext context;
+	private final MetricContext metricContext;
+	private final RulePlan plan;
+	private final LanguageBase language;
+
+	private final ListMultimap<Class<?>, AggregatorState<Object, ?>> subscriptions;
+	private final Map<MetricProducer<?>, AggregatorState<Object, ?>> subscribed;
+
+	private final List<MetricBase> targetMetrics;
+
+	public StylesheetWalker(BaseContext context, MetricContext metricContext, RulePlan plan, LanguageBase language) {
+		this.context = context;
+		this.metricContext = metricContext;
+		this.plan = plan;
+		this.language = language;
+
+		subscriptions = LinkedListMultimap.create();
+		subscribed = Maps.newHashMap();
+		targetMetrics = Lists.newArrayList();
+	}
+
+	/**
+	 * Subscribes the producer to the walk if it aggregates a type that is walked
+	 * @param producer The producer
+	 * @return True if the producer will be fed the targets
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean subscribe(MetricProducer<?> producer) {
+		if (!(producer instanceof MetricAggregator)) {
+			return false;
+		}
+
+		MetricAggregator<?, ?> aggregator = (MetricAggregator<?, ?>)producer;
+		// The content is fed to String aggregators in pieces by LanguageBase.generateMetrics
+		if (!language.canRulesAccept(aggregator.getAggregatedType())
+			|| aggregator.getAggregatedType() == String.class
+			|| aggregator.getAggregatedType() == CascadingStyleSheet.class) {
+			return false;
+		}
+
+		// Only fed targets of the aggregated type
+		AggregatorState<Object, ?> subscription = new AggregatorState<>((MetricAggregator<Object, ?>)aggregator);
+		subscriptions.put(aggregator.getAggregatedType(), subscription);
+		subscribed.put(producer, subscription);
+		return true;
+	}
+
+	/**
+	 * Walks the whole stylesheet
+	 * @param stylesheet The stylesheet
+	 */
+	public void walk(CascadingStyleSheet stylesheet) {
+		CSSVisitor.visitCSS(stylesheet, this);
+	}
+
+	/**
+	 * Finishes the metric of a subscribed producer
+	 * @param producer The subscribed producer
+	 * @return The metric
+	 */
+	public MetricBase finish(MetricProducer<?> producer) {
+		return subscribed.get(producer).finish(metricContext);
+	}
+
+	/**
+	 * Retrieves the metrics produced by the producers of walked types
+	 * @return The metrics in source order
+	 */
+	public List<MetricBase> getTargetMetrics() {
+		return targetMetrics;
+	}
+
+	@Override
+	public void onBeginStyleRule(CSSStyleRule styleRule) {
+		visit(CSSStyleRule.class, styleRule);
+
+		for (CSSDeclaration declaration : styleRule.getAllDeclarations()) {
+			visit(CSSDeclaration.class, declaration);
+		}
+	}
+
+	@Override
+	public void onBeginMediaRule(CSSMediaRule mediaRule) {
+		visit(CSSMediaRule.class, mediaRule);
+	}
+
+	@Override
+	public void onBeginSupportsRule(CSSSupportsRule supportsRule) {
+		visit(CSSSupportsRule.class, supportsRule);
+	}
+
+	@Override
+	public void onImport(CSSImportRule importRule) {
+		visit(CSSImportRule.class, importRule);
+	}
+
+	@Override
+	public void onBeginFontFaceRule(CSSFontFaceRule fontFaceRule) {
+		visit(CSSFontFaceRule.class, fontFaceRule);
+	}
+
+	@Override
+	public void onBeginPageRule(CSSPageRule pageRule) {
+		visit(CSSPageRule.class, pageRule);
+	}
+
+	@Override
+	public void onBeginKeyframesRule(CSSKeyframesRule keyframesRule) {
+		visit(CSSKeyframesRule.class, keyframesRule);
+	}
+
+	private <T> void visit(Class<T> type, T target) {
+		for (Rule<T> rule : plan.getRules(type)) {
+			context.check(rule, target);
+		}
+
+		Collection<MetricProducer<T>> producers = language.getMetricProducersFor(type);
+		for (MetricProducer<T> producer : producers) {
+			MetricBase metric = producer.produce(metricContext, target);
+			if (metric != null) {
+				targetMetrics.add(metric);
+			}
+		}
+
+		for (AggregatorState<Object, ?> subscription : subscriptions.get(type)) {
+			subscription.accumulate(metricContext, target);
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package logicanalyser.languages;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import logicanalyser.MetricMap;
+import logicanalyser.MetricValue;
+import logicanalyser.Rule;
+import logicanalyser.RuleBudget;
+import logicanalyser.config.Details;
+import logicanalyser.languages.BaseContext.RecordedMarker;
+
+/**
+ * Reuses the markers of pure rules for repeated subtrees, such as the same
+ * card markup on every item of a listing.
+ *
+ * Every element with a pure rule for its tag gets a hash of its subtree:
+ * its tag, its attributes, and its child nodes in order. Only those
+ * subtrees are hashed, so the rest of the document costs no more than
+ * counting its elements. When a pure rule has already checked an
+ * element with the same hash, tag and subtree size, its markers are created
+ * again on the matching elements of the new subtree instead of running the
+ * rule. Markers are located again rather than moved by an offset, so
+ * subtrees written with different whitespace inside their tags still get
+ * correct locations.
+ *
+ * The hash is keyed randomly for each document, so crafted content cannot
+ * make different subtrees collide.
+ */
+class SubtreeMemo {
+	private static final byte ELEMENT = 1;
+	private static final byte TEXT = 2;
+	private static final byte DATA = 3;
+	private static final byte COMMENT = 4;
+	private static final byte OTHER = 5;
+
+	private final Element[] elements;
+	private final long[] hashes;
+	private final int[] sizes;
+
+	private final Map<Rule<?>, Map<Long, Result>> results;
+
+	private int hits;
+	private int misses;
+
+	/**
+	 * Hashes the subtrees of a document that pure rules will check
+	 * @param document The document
+	 * @param rules The rules that will be checked on the document
+	 */
+	public SubtreeMemo(Document document, ElementRuleTable rules) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Builder builder = new Builder(Hashing.sipHash24(random.nextLong(), random.nextLong()), rules);
+		NodeTraversor.traverse(builder, document);
+
+		int size = builder.count;
+		elements = Arrays.copyOf(builder.elements, size);
+		hashes = Arrays.copyOf(builder.hashes, size);
+		sizes = Arrays.copyOf(builder.sizes, size);
+
+		results = Maps.newIdentityHashMap();
+	}
+
+	/**
+	 * Checks an element with a pure rule, reusing earlier markers if possible
+	 * @param rule The rule
+	 * @param index The index of the element in document order, starting with the document itself
+	 * @param context The context receiving the markers
+	 */
+	public void check(Rule<Element> rule, int index, BaseContext context) {
+		Element element = elements[index];
+
+		RuleBudget.Usage budget = context.getBudget();
+		if (budget.isTracking() && budget.forRule(rule).isStopped()) {
+			// Leaves the notice to the context
+			context.check(rule, element);
+			return;
+		}
+
+		Map<Long, Result> ruleResults = results.computeIfAbsent(rule, r -> Maps.newHashMap());
+		Result result = ruleResults.get(hashes[index]);
+		if (result != null && result.matches(element, sizes[index])) {
+			++hits;
+			result.replay(elements, index, context);
+			return;
+		}
+
+		++misses;
+		List<RecordedMarker> recorded;
+		context.startRecording();
+		try {
+			context.check(rule, element);
+		} finally {
+			recorded = context.stopRecording();
+		}
+
+		if (recorded == null || (budget.isTracking() && budget.forRule(rule).isStopped())) {
+			return;
+		}
+
+		Result created = Result.create(recorded, elements, index, sizes[index]);
+		if (created != null && result == null) {
+			ruleResults.put(hashes[index], created);
+		}
+	}
+
+	/**
+	 * Creates the metric of how often results were reused
+	 * @param name The name of the metric
+	 * @return The metric
+	 */
+	public MetricMap toMetric(String name) {
+		return new MetricMap(
+			name,
+			ImmutableMap.of(
+				"hits", new MetricValue(hits),
+				"misses", new MetricValue(misses)
+			)
+		);
+	}
+
+	/**
+	 * The markers of one rule on one subtree
+	 */
+	private static class Result {
+		private final String tag;
+		private final int size;
+		private final int[] targets;
+		private final String[] ruleIds;
+		private final Details[] details;
+
+		private Result(String tag, int size, int[] targets, String[] ruleIds, Details[] details) {
+			this.tag = tag;
+			this.size = size;
+			this.targets = targets;
+			this.ruleIds = ruleIds;
+			this.details = details;
+		}
+
+		/**
+		 * Creates the result from recorded markers
+		 * @return The result, or null if a marker is not inside the subtree
+		 */
+		public static Result create(List<RecordedMarker> recorded, Element[] elements, int index, int size) {
+			int[] targets = new int[recorded.size()];
+			String[] ruleIds = new String[recorded.size()];
+			Details[] details = new Details[recorded.size()];
+
+			for (int i = 0; i < targets.length; ++i) {
+				RecordedMarker marker = recorded.get(i);
+
+				int offset = -1;
+				for (int j = 0; j < size; ++j) {
+					if (elements[index + j] == marker.target) {
+						offset = j;
+						break;
+					}
+				}
+
+				if (offset == -1) {
+					return null;
+				}
+
+				targets[i] = offset;
+				ruleIds[i] = marker.ruleId;
+				details[i] = marker.details;
+			}
+
+			return new Result(elements[index].tagName(), size, targets, ruleIds, details);
+		}
+
+		public boolean matches(Element element, int size) {
+			return this.size == size && tag.equals(element.tagName());
+		}
+
+		public void replay(Element[] elements, int index, BaseContext context) {
+			// The element being checked is still the visited one, the same as for the rule itself
+			for (int i = 0; i < targets.length; ++i) {
+				context.addMarker(elements[index + targets[i]], ruleIds[i], details[i]);
+			}
+		}
+	}
+
+	private static class Builder implements NodeVisitor {
+		private final HashFunction function;
+		private final ElementRuleTable rules;
+
+		private Element[] elements = new Element[64];
+		private long[] hashes = new long[64];
+		private int[] sizes = new int[64];
+		private int count;
+
+		/**
+		 * The hashers of the open elements, the innermost last,
+		 * or null for elements outside of the hashed subtrees
+		 */
+		private Hasher[] open = new Hasher[16];
+		private int[] openIndexes = new int[16];
+
+		public Builder(HashFunction function, ElementRuleTable rules) {
+			this.function = function;
+			this.rules = rules;
+		}
+
+		@Override
+		public void head(Node node, int depth) {
+			if (depth == open.length) {
+				open = Arrays.copyOf(open, depth * 2);
+				openIndexes = Arrays.copyOf(openIndexes, depth * 2);
+			}
+
+			if (node instanceof Element) {
+				Element element = (Element)node;
+				if (count == elements.length) {
+					elements = Arrays.copyOf(elements, count * 2);
+					hashes = Arrays.copyOf(hashes, count * 2);
+					sizes = Arrays.copyOf(sizes, count * 2);
+				}
+
+				elements[count] = element;
+				openIndexes[depth] = count;
+				++count;
+
+				// Descendants are hashed too, as they are part of the hash of the subtree
+				boolean inSubtree = depth > 0 && open[depth - 1] != null;
+				if (!inSubtree && !rules.hasPureRulesFor(element.tagName())) {
+					open[depth] = null;
+					return;
+				}
+
+				Hasher hasher = function.newHasher();
+				putString(hasher, element.tagName());
+				hasher.putInt(element.attributes().size());
+				for (Attribute attribute : element.attributes()) {
+					putString(hasher, attribute.getKey());
+					putString(hasher, attribute.getValue());
+				}
+
+				open[depth] = hasher;
+			} else if (depth > 0 && open[depth - 1] != null) {
+				Hasher parent = open[depth - 1];
+				if (node instanceof TextNode) {
+					parent.putByte(TEXT);
+					putString(parent, ((TextNode)node).getWholeText());
+				} else if (node instanceof DataNode) {
+					parent.putByte(DATA);
+					putString(parent, ((DataNode)node).getWholeData());
+				} else if (node instanceof Comment) {
+					parent.putByte(COMMENT);
+					putString(parent, ((Comment)node).getData());
+				} else {
+					parent.putByte(OTHER);
+					putString(parent, node.outerHtml());
+				}
+			}
+		}
+
+		@Override
+		public void tail(Node node, int depth) {
+			if (!(node instanceof Element)) {
+				return;
+			}
+
+			int index = openIndexes[depth];
+			sizes[index] = count - index;
+			if (open[depth] == null) {
+				return;
+			}
+
+			long hash = open[depth].hash().asLong();
+			hashes[index] = hash;
+			open[depth] = null;
+
+			if (depth > 0 && open[depth - 1] != null) {
+				open[depth - 1].putByte(ELEMENT);
+				open[depth - 1].putLong(hash);
+			}
+		}
+
+		private static void putString(Hasher hasher, String value) {
+			hasher.putInt(value.length());
+			hasher.putUnencodedChars(value);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package logicanalyser.languages.css;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.helger.css.ECSSVersion;
+import com.helger.css.decl.CSSDeclaration;
+import com.helger.css.decl.CSSExpression;
+import com.helger.css.decl.CSSExpressionMemberFunction;
+import com.helger.css.decl.CSSExpressionMemberTermSimple;
+import com.helger.css.decl.ICSSExpressionMember;
+import com.helger.css.writer.CSSWriterSettings;
+
+import logicanalyser.languages.CSSRuleContext;
+import logicanalyser.languages.Context;
+
+/**
+ * The value of a declaration split into classified terms.
+ * During an analysis these are created once per declaration and shared
+ * between rules through {@link CSSRuleContext}.
+ */
+public class DeclarationValue {
+	private static final CSSWriterSettings WRITER_SETTINGS = new CSSWriterSettings(ECSSVersion.LATEST);
+	
+	private final List<ValueTerm> terms;
+	private final List<ValueTerm> simpleTerms;
+	
+	/**
+	 * Parses the value of a declaration
+	 * @param declaration The declaration
+	 */
+	public DeclarationValue(CSSDeclaration declaration) {
+		ImmutableList.Builder<ValueTerm> all = ImmutableList.builder();
+		ImmutableList.Builder<ValueTerm> simple = ImmutableList.builder();
+		
+		CSSExpression expression = declaration.getExpression();
+		for (ICSSExpressionMember member : expression.getAllMembers()) {
+			ValueTerm term;
+			if (member instanceof CSSExpressionMemberTermSimple) {
+				term = ValueTerm.parseSimple(((CSSExpressionMemberTermSimple)member).getValue());
+				simple.add(term);
+			} else if (member instanceof CSSExpressionMemberFunction) {
+				CSSExpressionMemberFunction function = (CSSExpressionMemberFunction)member;
+				term = ValueTerm.function(function.getAsCSSString(WRITER_SETTINGS, 0), function.getFunctionName());
+			} else {
+				term = ValueTerm.other(member.getAsCSSString(WRITER_SETTINGS, 0));
+			}
+			
+			all.add(term);
+		}
+		
+		terms = all.build();
+		simpleTerms = simple.build();
+	}
+	
+	/**
+	 * Gets the value of a declaration, using the shared value if the context has one
+	 * @param context The context of the rule
+	 * @param declaration The declaration
+	 * @return The value
+	 */
+	public static DeclarationValue of(Context context, CSSDeclaration declaration) {
+		if (context instanceof CSSRuleContext) {
+			return ((CSSRuleContext)context).getValue(declaration);
+		} else {
+			return new DeclarationValue(declaration);
+		}
+	}
+	
+	/**
+	 * Gets every term, including functions, operators and URLs
+	 * @return An unmodifiable list of terms in source order
+	 */
+	public List<ValueTerm> getTerms() {
+		return terms;
+	}
+	
+	/**
+	 * Gets the simple terms, which are those returned by {@code CSSExpression.getAllSimpleMembers()}
+	 * @return An unmodifiable list of terms in source order
+	 */
+	public List<ValueTerm> getSimpleTerms() {
+		return simpleTerms;
+	}
+}
@@ -1,19 +1,20 @@
 package logicanalyser.languages.css;
 
-import org.w3c.dom.css.CSSRule;
-
 import com.helger.css.decl.CSSDeclaration;
 import com.helger.css.decl.CSSStyleRule;
 import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.decl.visit.CSSVisitor;
+import com.helger.css.decl.visit.DefaultCSSVisitor;
 
+import logicanalyser.MetricAggregator;
 import logicanalyser.MetricBase;
 import logicanalyser.MetricMap;
 import logicanalyser.MetricProducer;
 import logicanalyser.MetricValue;
 import logicanalyser.languages.MetricContext;
-import logicanalyser.util.CountingMap;
+import logicanalyser.util.ObjectIntCounter;
 
-public class PropertyCount extends MetricProducer<CascadingStyleSheet> {
+public class PropertyCount extends MetricProducer<CascadingStyleSheet> implements MetricAggregator<CSSDeclaration, ObjectIntCounter<String>> {
 
 	public PropertyCount() {
 		super(CascadingStyleSheet.class);
@@ -26,13 +27,44 @@ public class PropertyCount extends MetricProducer<CascadingStyleSheet> {
 
 	@Override
 	public MetricBase produce(MetricContext context, CascadingStyleSheet target) {
-		CountingMap<String> tagCount = new CountingMap<>();
-		for (CSSStyleRule rule : target.getAllStyleRules()) {
-			for (CSSDeclaration declaration : rule.getAllDeclarations()) {
-				tagCount.increment(declaration.getProperty());
+		ObjectIntCounter<String> tagCount = createState();
+		
+		// Includes the style rules inside @media and @supports
+		CSSVisitor.visitCSS(target, new DefaultCSSVisitor() {
+			@Override
+			public void onBeginStyleRule(CSSStyleRule rule) {
+				for (CSSDeclaration declaration : rule.getAllDeclarations()) {
+					accumulate(tagCount, context, declaration);
+				}
 			}
-		}
+		});
 		
+		return finish(context, tagCount);
+	}
+	
+	@Override
+	public Class<CSSDeclaration> getAggregatedType() {
+		return CSSDeclaration.class;
+	}
+	
+	@Override
+	public ObjectIntCounter<String> createState() {
+		return new ObjectIntCounter<>();
+	}
+	
+	@Override
+	public void accumulate(ObjectIntCounter<String> tagCount, MetricContext context, CSSDeclaration declaration) {
+		tagCount.increment(declaration.getProperty());
+	}
+	
+	@Override
+	public ObjectIntCounter<String> merge(ObjectIntCounter<String> first, ObjectIntCounter<String> second) {
+		first.addAll(second);
+		return first;
+	}
+	
+	@Override
+	public MetricBase finish(MetricContext context, ObjectIntCounter<String> tagCount) {
 		return new MetricMap(
 			getMetricName(),
 			tagCount.toMap(
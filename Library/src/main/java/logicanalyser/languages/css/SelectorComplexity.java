@@ -0,0 +1,99 @@
+package logicanalyser.languages.css;
+
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.helger.css.decl.CSSSelector;
+import com.helger.css.decl.CSSStyleRule;
+import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.decl.visit.CSSVisitor;
+import com.helger.css.decl.visit.DefaultCSSVisitor;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricMap;
+import logicanalyser.MetricProducer;
+import logicanalyser.MetricValue;
+import logicanalyser.languages.CSSAnalyser.CSSMetricContext;
+import logicanalyser.languages.MetricContext;
+
+/**
+ * A histogram of how many simple selectors each selector is made of.
+ * Selectors with {@value #LAST_BUCKET} or more are counted together.
+ */
+public class SelectorComplexity extends MetricProducer<CascadingStyleSheet> implements MetricAggregator<CSSStyleRule, int[]> {
+	private static final int LAST_BUCKET = 10;
+
+	public SelectorComplexity() {
+		super(CascadingStyleSheet.class);
+	}
+
+	@Override
+	public String getMetricName() {
+		return "css.selectorcomplexity";
+	}
+
+	@Override
+	public MetricMap produce(MetricContext context, CascadingStyleSheet target) {
+		int[] counts = createState();
+		
+		// Includes the style rules inside @media and @supports
+		CSSVisitor.visitCSS(target, new DefaultCSSVisitor() {
+			@Override
+			public void onBeginStyleRule(CSSStyleRule rule) {
+				accumulate(counts, context, rule);
+			}
+		});
+		
+		return finish(context, counts);
+	}
+	
+	@Override
+	public Class<CSSStyleRule> getAggregatedType() {
+		return CSSStyleRule.class;
+	}
+	
+	@Override
+	public int[] createState() {
+		return new int[LAST_BUCKET + 1];
+	}
+	
+	@Override
+	public void accumulate(int[] counts, MetricContext context, CSSStyleRule rule) {
+		for (CSSSelector selector : rule.getAllSelectors()) {
+			SelectorInfo info;
+			if (context instanceof CSSMetricContext) {
+				info = ((CSSMetricContext)context).getSelectorInfo(selector);
+			} else {
+				info = new SelectorInfo(selector);
+			}
+			
+			++counts[Math.min(info.getSimpleSelectorCount(), LAST_BUCKET)];
+		}
+	}
+	
+	@Override
+	public int[] merge(int[] first, int[] second) {
+		for (int i = 0; i < first.length; ++i) {
+			first[i] += second[i];
+		}
+		
+		return first;
+	}
+	
+	@Override
+	public MetricMap finish(MetricContext context, int[] counts) {
+		// In increasing complexity
+		Map<String, MetricValue> buckets = Maps.newLinkedHashMap();
+		for (int i = 0; i < LAST_BUCKET; ++i) {
+			if (counts[i] > 0) {
+				buckets.put(String.valueOf(i), new MetricValue(counts[i]));
+			}
+		}
+		
+		if (counts[LAST_BUCKET] > 0) {
+			buckets.put(LAST_BUCKET + "+", new MetricValue(counts[LAST_BUCKET]));
+		}
+		
+		return new MetricMap(getMetricName(), buckets);
+	}
+}
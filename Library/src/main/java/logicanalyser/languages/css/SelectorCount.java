@@ -0,0 +1,85 @@
+package logicanalyser.languages.css;
+
+import com.helger.css.ECSSVersion;
+import com.helger.css.decl.CSSSelector;
+import com.helger.css.decl.CSSStyleRule;
+import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.decl.visit.CSSVisitor;
+import com.helger.css.decl.visit.DefaultCSSVisitor;
+import com.helger.css.writer.CSSWriterSettings;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricMap;
+import logicanalyser.MetricProducer;
+import logicanalyser.MetricValue;
+import logicanalyser.languages.MetricContext;
+import logicanalyser.util.ObjectIntCounter;
+
+/**
+ * Counts how often each selector is used, written out the same way
+ * for every stylesheet.
+ *
+ * This metric is not registered by default, as its map grows with every
+ * distinct selector of a stylesheet. Register it with
+ * {@link logicanalyser.languages.LanguageBase#registerMetric(MetricProducer)}
+ * on the {@link logicanalyser.languages.CSSAnalyser} when the selectors are
+ * wanted, such as for {@link logicanalyser.SiteSummary#estimateDistinctSelectors()}.
+ */
+public class SelectorCount extends MetricProducer<CascadingStyleSheet> implements MetricAggregator<CSSStyleRule, ObjectIntCounter<String>> {
+	private static final CSSWriterSettings WRITER_SETTINGS = new CSSWriterSettings(ECSSVersion.LATEST);
+	
+	public SelectorCount() {
+		super(CascadingStyleSheet.class);
+	}
+	
+	@Override
+	public String getMetricName() {
+		return "css.selectors";
+	}
+	
+	@Override
+	public MetricMap produce(MetricContext context, CascadingStyleSheet target) {
+		ObjectIntCounter<String> count = createState();
+		
+		// Includes the style rules inside @media and @supports
+		CSSVisitor.visitCSS(target, new DefaultCSSVisitor() {
+			@Override
+			public void onBeginStyleRule(CSSStyleRule rule) {
+				accumulate(count, context, rule);
+			}
+		});
+		
+		return finish(context, count);
+	}
+	
+	@Override
+	public Class<CSSStyleRule> getAggregatedType() {
+		return CSSStyleRule.class;
+	}
+	
+	@Override
+	public ObjectIntCounter<String> createState() {
+		return new ObjectIntCounter<>();
+	}
+	
+	@Override
+	public void accumulate(ObjectIntCounter<String> count, MetricContext context, CSSStyleRule rule) {
+		for (CSSSelector selector : rule.getAllSelectors()) {
+			count.increment(selector.getAsCSSString(WRITER_SETTINGS, 0));
+		}
+	}
+	
+	@Override
+	public ObjectIntCounter<String> merge(ObjectIntCounter<String> first, ObjectIntCounter<String> second) {
+		first.addAll(second);
+		return first;
+	}
+	
+	@Override
+	public MetricMap finish(MetricContext context, ObjectIntCounter<String> count) {
+		return new MetricMap(
+			getMetricName(),
+			count.toMap(MetricValue::new)
+		);
+	}
+}
@@ -0,0 +1,211 @@
+package logicanalyser.languages.css;
+
+import java.util.Locale;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableSet;
+import com.helger.css.decl.CSSSelector;
+import com.helger.css.decl.CSSSelectorAttribute;
+import com.helger.css.decl.CSSSelectorMemberFunctionLike;
+import com.helger.css.decl.CSSSelectorMemberNot;
+import com.helger.css.decl.CSSSelectorSimpleMember;
+import com.helger.css.decl.ECSSSelectorCombinator;
+import com.helger.css.decl.ICSSSelectorMember;
+
+import logicanalyser.languages.CSSRuleContext;
+import logicanalyser.languages.Context;
+
+/**
+ * The specificity and member counts of a selector, worked out in one
+ * pass over its members. During an analysis these are created once per
+ * selector and shared between rules and metrics through {@link CSSRuleContext}.
+ *
+ * The member counts only include members at the top level of the selector.
+ * The specificity also includes the selectors inside {@code :not()}.
+ */
+public class SelectorInfo {
+	/**
+	 * Pseudo-elements that may be written with a single colon
+	 */
+	private static final Set<String> LEGACY_PSEUDO_ELEMENTS = ImmutableSet.of(
+		":before", ":after", ":first-line", ":first-letter"
+	);
+
+	private int idCount;
+	private int classCount;
+	private int attributeCount;
+	private int pseudoClassCount;
+	private int pseudoElementCount;
+	private int elementCount;
+	private int universalCount;
+	private int combinatorCount;
+
+	private int notCount;
+	private int notIds;
+	private int notClasses;
+	private int notElements;
+
+	private CSSSelectorSimpleMember firstId;
+
+	/**
+	 * Counts the members of a selector
+	 * @param selector The selector
+	 */
+	public SelectorInfo(CSSSelector selector) {
+		for (ICSSSelectorMember member : selector.getAllMembers()) {
+			if (member instanceof CSSSelectorSimpleMember) {
+				countSimple((CSSSelectorSimpleMember)member);
+			} else if (member instanceof CSSSelectorAttribute) {
+				++attributeCount;
+			} else if (member instanceof CSSSelectorMemberFunctionLike) {
+				// Such as :nth-child(2n)
+				++pseudoClassCount;
+			} else if (member instanceof CSSSelectorMemberNot) {
+				countNot((CSSSelectorMemberNot)member);
+			} else if (member instanceof ECSSSelectorCombinator) {
+				++combinatorCount;
+			}
+		}
+	}
+
+	private void countSimple(CSSSelectorSimpleMember member) {
+		if (member.isHash()) {
+			++idCount;
+			if (firstId == null) {
+				firstId = member;
+			}
+		} else if (member.isClass()) {
+			++classCount;
+		} else if (member.isPseudo()) {
+			String value = member.getValue();
+			if (value.startsWith("::") || LEGACY_PSEUDO_ELEMENTS.contains(value.toLowerCase(Locale.ROOT))) {
+				++pseudoElementCount;
+			} else {
+				++pseudoClassCount;
+			}
+		} else if (member.isElementName()) {
+			++elementCount;
+			if (member.getValue().equals("*")) {
+				++universalCount;
+			}
+		}
+	}
+
+	/**
+	 * The specificity of :not() is that of its most specific argument
+	 */
+	private void countNot(CSSSelectorMemberNot member) {
+		++notCount;
+
+		int[] highest = { 0, 0, 0 };
+		for (CSSSelector inner : member.getAllSelectors()) {
+			int[] specificity = new SelectorInfo(inner).getSpecificity();
+			if (compare(specificity, highest) > 0) {
+				highest = specificity;
+			}
+		}
+
+		notIds += highest[0];
+		notClasses += highest[1];
+		notElements += highest[2];
+	}
+
+	private static int compare(int[] a, int[] b) {
+		for (int i = 0; i < a.length; ++i) {
+			if (a[i] != b[i]) {
+				return Integer.compare(a[i], b[i]);
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Gets the information of a selector, using the shared information if the context has it
+	 * @param context The context of the rule
+	 * @param selector The selector
+	 * @return The information
+	 */
+	public static SelectorInfo of(Context context, CSSSelector selector) {
+		if (context instanceof CSSRuleContext) {
+			return ((CSSRuleContext)context).getSelectorInfo(selector);
+		} else {
+			return new SelectorInfo(selector);
+		}
+	}
+
+	/**
+	 * Gets the specificity as the number of ID selectors, the number of
+	 * class, attribute and pseudo-class selectors, and the number of type
+	 * and pseudo-element selectors
+	 * @return A new array of the three parts
+	 */
+	public int[] getSpecificity() {
+		return new int[] {
+			idCount + notIds,
+			classCount + attributeCount + pseudoClassCount + notClasses,
+			elementCount - universalCount + pseudoElementCount + notElements
+		};
+	}
+
+	/**
+	 * Gets the number of ID selectors, such as {@code #main}
+	 * @return The count
+	 */
+	public int getIdCount() {
+		return idCount;
+	}
+
+	/**
+	 * Gets the number of class selectors, such as {@code .item}
+	 * @return The count
+	 */
+	public int getClassCount() {
+		return classCount;
+	}
+
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
+	public int getPseudoClassCount() {
+		return pseudoClassCount;
+	}
+
+	public int getPseudoElementCount() {
+		return pseudoElementCount;
+	}
+
+	/**
+	 * Gets the number of type selectors, such as {@code div}, including {@code *}
+	 * @return The count
+	 */
+	public int getElementCount() {
+		return elementCount;
+	}
+
+	/**
+	 * Gets the number of combinators, such as {@code >} or a descendant space
+	 * @return The count
+	 */
+	public int getCombinatorCount() {
+		return combinatorCount;
+	}
+
+	/**
+	 * Gets the number of members that are not combinators
+	 * @return The count
+	 */
+	public int getSimpleSelectorCount() {
+		return idCount + classCount + attributeCount + pseudoClassCount
+			+ pseudoElementCount + elementCount + notCount;
+	}
+
+	/**
+	 * Gets the first ID selector
+	 * @return The member, or null if there is none
+	 */
+	public CSSSelectorSimpleMember getFirstId() {
+		return firstId;
+	}
+}
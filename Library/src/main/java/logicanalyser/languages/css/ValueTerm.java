@@ -0,0 +1,251 @@
+package logicanalyser.languages.css;
+
+/**
+ * A single term of a declaration value, classified once so rules
+ * do not have to parse the text again.
+ */
+public class ValueTerm {
+	public enum Kind {
+		/**
+		 * A number with an optional unit, such as {@code 0}, {@code 1.5em} or {@code 50%}
+		 */
+		NUMBER,
+		/**
+		 * An identifier, such as {@code bold} or {@code sans-serif}
+		 */
+		KEYWORD,
+		/**
+		 * A quoted string
+		 */
+		STRING,
+		/**
+		 * A function call, such as {@code rgb(0, 0, 0)}
+		 */
+		FUNCTION,
+		/**
+		 * Anything else, such as hash colours, URLs, operators and math expressions
+		 */
+		OTHER
+	}
+
+	private final Kind kind;
+	private final String text;
+	private final boolean simple;
+
+	private final String numberText;
+	private final double number;
+	private final String unit;
+	private final String functionName;
+
+	private ValueTerm(Kind kind, String text, boolean simple, String numberText, double number, String unit) {
+		this(kind, text, simple, numberText, number, unit, null);
+	}
+
+	private ValueTerm(Kind kind, String text, boolean simple, String numberText, double number, String unit, String functionName) {
+		this.kind = kind;
+		this.text = text;
+		this.simple = simple;
+		this.numberText = numberText;
+		this.number = number;
+		this.unit = unit;
+		this.functionName = functionName;
+	}
+
+	/**
+	 * Classifies the text of a simple term
+	 * @param text The text as written in the source
+	 * @return The term
+	 */
+	static ValueTerm parseSimple(String text) {
+		if (text.isEmpty()) {
+			return new ValueTerm(Kind.OTHER, text, true, null, 0, null);
+		}
+
+		char first = text.charAt(0);
+		if (first == '"' || first == '\'') {
+			return new ValueTerm(Kind.STRING, text, true, null, 0, null);
+		}
+
+		int numberEnd = scanNumber(text);
+		if (numberEnd > 0 && isUnit(text, numberEnd)) {
+			String numberText = text.substring(0, numberEnd);
+			return new ValueTerm(
+				Kind.NUMBER,
+				text,
+				true,
+				numberText,
+				Double.parseDouble(numberText),
+				text.substring(numberEnd)
+			);
+		}
+
+		if (isIdentifier(text)) {
+			return new ValueTerm(Kind.KEYWORD, text, true, null, 0, null);
+		}
+
+		return new ValueTerm(Kind.OTHER, text, true, null, 0, null);
+	}
+
+	/**
+	 * Creates a function term
+	 * @param text The text of the whole call
+	 * @param name The name of the function
+	 * @return The term
+	 */
+	static ValueTerm function(String text, String name) {
+		return new ValueTerm(Kind.FUNCTION, text, false, null, 0, null, name);
+	}
+
+	/**
+	 * Creates a term that is not classified further
+	 * @param text The text of the term
+	 * @return The term
+	 */
+	static ValueTerm other(String text) {
+		return new ValueTerm(Kind.OTHER, text, false, null, 0, null);
+	}
+
+	/**
+	 * Finds the end of a leading number, with an optional sign and decimal part
+	 * @return The end of the number, or 0 if there is none
+	 */
+	private static int scanNumber(String text) {
+		int i = 0;
+		if (text.charAt(0) == '+' || text.charAt(0) == '-') {
+			++i;
+		}
+
+		int digits = 0;
+		while (i < text.length() && isDigit(text.charAt(i))) {
+			++i;
+			++digits;
+		}
+
+		if (i < text.length() && text.charAt(i) == '.') {
+			int fractionStart = i + 1;
+			int j = fractionStart;
+			while (j < text.length() && isDigit(text.charAt(j))) {
+				++j;
+			}
+
+			if (j > fractionStart) {
+				digits += j - fractionStart;
+				i = j;
+			}
+		}
+
+		return digits > 0 ? i : 0;
+	}
+
+	private static boolean isUnit(String text, int start) {
+		if (start == text.length()) {
+			return true;
+		}
+
+		if (text.charAt(start) == '%') {
+			return start + 1 == text.length();
+		}
+
+		for (int i = start; i < text.length(); ++i) {
+			if (!isLetter(text.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isIdentifier(String text) {
+		int start = text.charAt(0) == '-' ? 1 : 0;
+		if (start == text.length() || !(isLetter(text.charAt(start)) || text.charAt(start) == '_' || text.charAt(start) == '-')) {
+			return false;
+		}
+
+		for (int i = start; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			if (!(isLetter(c) || isDigit(c) || c == '-' || c == '_')) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Gets the term as written in the source
+	 * @return The text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Checks if this term is a simple term, which are the terms
+	 * returned by {@code CSSExpression.getAllSimpleMembers()}
+	 * @return True for simple terms
+	 */
+	public boolean isSimple() {
+		return simple;
+	}
+
+	public boolean isNumber() {
+		return kind == Kind.NUMBER;
+	}
+
+	/**
+	 * Gets the number as written, without its unit
+	 * @return The number text, or null if this is not a number
+	 */
+	public String getNumberText() {
+		return numberText;
+	}
+
+	/**
+	 * Gets the value of the number
+	 * @return The value, or 0 if this is not a number
+	 */
+	public double getNumber() {
+		return number;
+	}
+
+	/**
+	 * Gets the unit of a number
+	 * @return The unit, which is empty for plain numbers, or null if this is not a number
+	 */
+	public String getUnit() {
+		return unit;
+	}
+
+	/**
+	 * Gets the name of a function
+	 * @return The name, or null if this is not a function
+	 */
+	public String getFunctionName() {
+		return functionName;
+	}
+
+	/**
+	 * Checks if this is a number followed by a unit made of letters, such as {@code px}
+	 * @return True if there is a unit other than %
+	 */
+	public boolean hasLetterUnit() {
+		return kind == Kind.NUMBER && !unit.isEmpty() && !unit.equals("%");
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
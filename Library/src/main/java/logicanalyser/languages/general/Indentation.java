@@ -3,10 +3,10 @@ package logicanalyser.languages.general;
 import com.google.common.net.MediaType;
 
 import logicanalyser.MetricBase;
-import logicanalyser.MetricList;
 import logicanalyser.MetricProducer;
-import logicanalyser.MetricValue;
+import logicanalyser.PackedMetricList;
 import logicanalyser.languages.MetricContext;
+import logicanalyser.util.LineIndex;
 
 public class Indentation extends MetricProducer<String> {
 	public static final int LANGUAGE_HTML = 0;
@@ -25,17 +25,20 @@ public class Indentation extends MetricProducer<String> {
 
 	@Override
 	public MetricBase produce(MetricContext context, String content) {
-		String[] lines = content.split("\n");
-		MetricValue[] values = new MetricValue[lines.length];
+		LineIndex lines = context.getLineIndex();
+		int lineCount = lines.getLineCount();
+		int[] starts = new int[lineCount];
+		int[] ends = new int[lineCount];
+		int[] types = new int[lineCount];
 		
-		for (int i = 0; i < values.length; ++i) {
-			String line = lines[i];
+		for (int i = 0; i < lineCount; ++i) {
+			int end = lines.getLineEnd(i);
 			int offset = 0;
 			int lineStart = 0;
 			int lineEnd = 0;
 			boolean hitStart = false;
-			for (int c = 0; c < line.length(); ++c) {
-				char ch = line.charAt(c);
+			for (int c = lines.getLineStart(i); c < end; ++c) {
+				char ch = content.charAt(c);
 				if (ch == ' ') {
 					++offset;
 				} else if (ch == '\t') {
@@ -60,9 +63,12 @@ public class Indentation extends MetricProducer<String> {
 				type = LANGUAGE_JAVASCRIPT;
 			}
 			
-			values[i] = new MetricValue(lineStart, lineEnd, type);
+			starts[i] = lineStart;
+			ends[i] = lineEnd;
+			types[i] = type;
 		}
 		
-		return new MetricList(getMetricName(), values);
+		// One entry per line of indentation start, end and language
+		return new PackedMetricList(getMetricName(), starts, ends, types);
 	}
 }
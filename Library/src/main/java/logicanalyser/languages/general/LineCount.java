@@ -1,5 +1,6 @@
 package logicanalyser.languages.general;
 
+import logicanalyser.MetricAggregator;
 import logicanalyser.MetricBase;
 import logicanalyser.MetricProducer;
 import logicanalyser.MetricSingle;
@@ -7,21 +8,85 @@ import logicanalyser.MetricValue;
 import logicanalyser.languages.MetricContext;
 
 /**
- * Counts the number of lines in the document
+ * Counts the number of lines in the document.
+ *
+ * As an aggregator it counts the lines of content that is given in
+ * consecutive pieces, which may be split anywhere, even inside a line.
+ * The count is the same as {@link logicanalyser.util.LineIndex#getLineCount()}
+ * of the whole content.
  */
-public class LineCount extends MetricProducer<String> {
+public class LineCount extends MetricProducer<String> implements MetricAggregator<String, LineCount.Lines> {
 	public LineCount() {
 		super(String.class);
 	}
-	
+
 	@Override
 	public String getMetricName() {
 		return "linecount";
 	}
-	
+
 	@Override
 	public MetricBase produce(MetricContext context, String target) {
-		String[] lines = target.split("\\n");
-		return new MetricSingle(getMetricName(), new MetricValue(lines.length));
+		// The lines of the whole document are already indexed
+		return new MetricSingle(getMetricName(), new MetricValue(context.getLineIndex().getLineCount()));
+	}
+
+	@Override
+	public Class<String> getAggregatedType() {
+		return String.class;
+	}
+
+	@Override
+	public Lines createState() {
+		return new Lines();
+	}
+
+	@Override
+	public void accumulate(Lines lines, MetricContext context, String piece) {
+		for (int i = 0; i < piece.length(); ++i) {
+			if (piece.charAt(i) == '\n') {
+				++lines.newlines;
+			} else {
+				lines.lastFilledLine = lines.newlines;
+			}
+		}
+
+		lines.length += piece.length();
+	}
+
+	@Override
+	public Lines merge(Lines first, Lines second) {
+		if (second.lastFilledLine != -1) {
+			first.lastFilledLine = first.newlines + second.lastFilledLine;
+		}
+
+		first.newlines += second.newlines;
+		first.length += second.length;
+		return first;
+	}
+
+	@Override
+	public MetricBase finish(MetricContext context, Lines lines) {
+		return new MetricSingle(getMetricName(), new MetricValue(lines.getLineCount()));
+	}
+
+	/**
+	 * The lines of the content accumulated so far
+	 */
+	public static class Lines {
+		private int newlines;
+		/**
+		 * The last line that is not empty, as trailing empty lines are not counted
+		 */
+		private int lastFilledLine = -1;
+		private long length;
+
+		public int getLineCount() {
+			if (length == 0) {
+				return 1;
+			} else {
+				return lastFilledLine + 1;
+			}
+		}
 	}
 }
@@ -0,0 +1,80 @@
+package logicanalyser.languages.html;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricMap;
+import logicanalyser.MetricProducer;
+import logicanalyser.MetricValue;
+import logicanalyser.languages.MetricContext;
+import logicanalyser.util.ObjectIntCounter;
+
+/**
+ * Counts the elements that use each class name.
+ *
+ * This metric is not registered by default, as its map grows with every
+ * distinct class name of a document. Register it with
+ * {@link logicanalyser.languages.LanguageBase#registerMetric(MetricProducer)}
+ * on the {@link logicanalyser.languages.HTMLAnalyser} when the class names are
+ * wanted, such as for {@link logicanalyser.SiteSummary#estimateDistinctClassNames()}.
+ */
+public class ClassNames extends MetricProducer<Document> implements MetricAggregator<Element, ObjectIntCounter<String>> {
+	public ClassNames() {
+		super(Document.class);
+	}
+	
+	@Override
+	public String getMetricName() {
+		return "html.classnames";
+	}
+	
+	@Override
+	public MetricMap produce(MetricContext context, Document target) {
+		ObjectIntCounter<String> count = createState();
+		
+		for (Element element : target.getAllElements()) {
+			accumulate(count, context, element);
+		}
+		
+		return finish(context, count);
+	}
+	
+	@Override
+	public Class<Element> getAggregatedType() {
+		return Element.class;
+	}
+	
+	@Override
+	public ObjectIntCounter<String> createState() {
+		return new ObjectIntCounter<>();
+	}
+	
+	@Override
+	public void accumulate(ObjectIntCounter<String> count, MetricContext context, Element element) {
+		// Avoids splitting an empty class list for every element
+		if (!element.hasAttr("class")) {
+			return;
+		}
+		
+		for (String name : element.classNames()) {
+			if (!name.isEmpty()) {
+				count.increment(name);
+			}
+		}
+	}
+	
+	@Override
+	public ObjectIntCounter<String> merge(ObjectIntCounter<String> first, ObjectIntCounter<String> second) {
+		first.addAll(second);
+		return first;
+	}
+	
+	@Override
+	public MetricMap finish(MetricContext context, ObjectIntCounter<String> count) {
+		return new MetricMap(
+			getMetricName(),
+			count.toMap(MetricValue::new)
+		);
+	}
+}
@@ -0,0 +1,64 @@
+package logicanalyser.languages.html;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+
+import logicanalyser.Rule;
+import logicanalyser.Ruleset;
+import logicanalyser.config.ElementPattern;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.HTMLAnalyser;
+import logicanalyser.languages.LanguageBase;
+
+/**
+ * A ruleset of declarative HTML rules. All of its patterns are compiled
+ * into a single {@link PatternMatcherRule}.
+ */
+public class DeclarativeRuleset implements Ruleset {
+	private final String categoryName;
+	private final List<Rule<?>> rules;
+	
+	/**
+	 * Compiles the patterns into a ruleset
+	 * @param categoryName The category name of the ruleset
+	 * @param patterns The patterns
+	 */
+	public DeclarativeRuleset(String categoryName, Iterable<ElementPattern> patterns) {
+		Preconditions.checkNotNull(categoryName);
+		
+		this.categoryName = categoryName;
+		
+		if (Iterables.isEmpty(patterns)) {
+			rules = ImmutableList.of();
+		} else {
+			rules = ImmutableList.<Rule<?>>of(new PatternMatcherRule("declarative." + categoryName, patterns));
+		}
+	}
+	
+	/**
+	 * Compiles the patterns loaded into a configuration
+	 * @param categoryName The category name of the ruleset
+	 * @param configuration The configuration holding the patterns
+	 */
+	public DeclarativeRuleset(String categoryName, RuleConfiguration configuration) {
+		this(categoryName, configuration.getElementPatterns());
+	}
+	
+	@Override
+	public String getCategoryName() {
+		return categoryName;
+	}
+	
+	@Override
+	public Class<? extends LanguageBase> getLanguage() {
+		return HTMLAnalyser.class;
+	}
+	
+	@Override
+	public List<Rule<?>> getContainedRules() {
+		return rules;
+	}
+}
@@ -0,0 +1,128 @@
+package logicanalyser.languages.html;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import com.google.common.collect.Maps;
+
+import logicanalyser.MetricAggregator;
+import logicanalyser.MetricMap;
+import logicanalyser.MetricProducer;
+import logicanalyser.MetricValue;
+import logicanalyser.languages.MetricContext;
+
+/**
+ * A histogram of how deeply elements are nested. The root element has
+ * a depth of 0, its children 1 and so on.
+ */
+public class ElementDepth extends MetricProducer<Document> implements MetricAggregator<Element, ElementDepth.Depths> {
+	public ElementDepth() {
+		super(Document.class);
+	}
+	
+	@Override
+	public String getMetricName() {
+		return "html.depth";
+	}
+	
+	@Override
+	public MetricMap produce(MetricContext context, Document target) {
+		Depths depths = createState();
+		
+		for (Element element : target.getAllElements()) {
+			accumulate(depths, context, element);
+		}
+		
+		return finish(context, depths);
+	}
+	
+	@Override
+	public Class<Element> getAggregatedType() {
+		return Element.class;
+	}
+	
+	@Override
+	public Depths createState() {
+		return new Depths();
+	}
+	
+	@Override
+	public void accumulate(Depths depths, MetricContext context, Element element) {
+		if (element instanceof Document) {
+			return;
+		}
+		
+		depths.add(depths.depthOf(element));
+	}
+	
+	@Override
+	public Depths merge(Depths first, Depths second) {
+		for (int depth = 0; depth < second.counts.length; ++depth) {
+			first.add(depth, second.counts[depth]);
+		}
+		
+		return first;
+	}
+	
+	@Override
+	public MetricMap finish(MetricContext context, Depths depths) {
+		// In increasing depth
+		Map<String, MetricValue> values = Maps.newLinkedHashMap();
+		for (int depth = 0; depth < depths.counts.length; ++depth) {
+			if (depths.counts[depth] > 0) {
+				values.put(String.valueOf(depth), new MetricValue(depths.counts[depth]));
+			}
+		}
+		
+		return new MetricMap(getMetricName(), values);
+	}
+	
+	/**
+	 * The number of elements at each depth
+	 */
+	public static class Depths {
+		private int[] counts = new int[16];
+		
+		/**
+		 * The ancestors of the last element, the innermost first.
+		 * Elements arrive in document order, so the parent of an element
+		 * is always among the ancestors of the one before it.
+		 */
+		private final Deque<Element> open = new ArrayDeque<>();
+		
+		private int depthOf(Element element) {
+			Element parent = element.parent();
+			while (!open.isEmpty() && open.peek() != parent) {
+				open.pop();
+			}
+			
+			if (open.isEmpty()) {
+				// The first element, or the first of a chunk that starts deeper
+				for (Element ancestor = parent; ancestor != null && !(ancestor instanceof Document); ancestor = ancestor.parent()) {
+					open.addLast(ancestor);
+				}
+			}
+			
+			int depth = open.size();
+			open.push(element);
+			return depth;
+		}
+		
+		private void add(int depth, int times) {
+			if (depth >= counts.length) {
+				counts = Arrays.copyOf(counts, Math.max(depth + 1, counts.length * 2));
+			}
+			
+			counts[depth] += times;
+		}
+		
+		private void add(int depth) {
+			add(depth, 1);
+		}
+	}
+}
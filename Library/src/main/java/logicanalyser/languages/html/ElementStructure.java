@@ -0,0 +1,89 @@
+package logicanalyser.languages.html;
+
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+
+import com.google.common.collect.Lists;
+
+import logicanalyser.languages.Context;
+import logicanalyser.languages.HTMLRuleContext;
+
+/**
+ * Answers structural questions about the elements of a document without
+ * running selectors. The queries read the tree directly and keep nothing
+ * between calls, as rules ask about each element only once.
+ */
+public class ElementStructure {
+	/**
+	 * Gets the structure of the context, or a new one if the context does not have one
+	 * @param context The context of the rule
+	 * @return The structure
+	 */
+	public static ElementStructure of(Context context) {
+		if (context instanceof HTMLRuleContext) {
+			return ((HTMLRuleContext)context).getStructure();
+		} else {
+			return new ElementStructure();
+		}
+	}
+
+	/**
+	 * Gets the child elements of an element
+	 * @param element The parent element
+	 * @return The children in document order
+	 */
+	public List<Element> getChildren(Element element) {
+		return element.children();
+	}
+
+	/**
+	 * Gets the child elements of an element with a tag
+	 * @param element The parent element
+	 * @param tagName The tag name of the children
+	 * @return The children in document order
+	 */
+	public List<Element> getChildren(Element element, String tagName) {
+		List<Element> found = Lists.newArrayList();
+		for (Node node : element.childNodes()) {
+			if (node instanceof Element && ((Element)node).tagName().equals(tagName)) {
+				found.add((Element)node);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Gets the first child element of an element
+	 * @param element The parent element
+	 * @return The first child or null if there are no child elements
+	 */
+	public Element getFirstChild(Element element) {
+		for (Node node : element.childNodes()) {
+			if (node instanceof Element) {
+				return (Element)node;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Finds the closest ancestor of an element with a tag
+	 * @param element The element to start from, which is not included
+	 * @param tagName The tag name of the ancestor
+	 * @return The ancestor or null if there is none
+	 */
+	public Element getAncestor(Element element, String tagName) {
+		for (Element current = element.parent(); current != null && !(current instanceof Document); current = current.parent()) {
+			if (current.tagName().equals(tagName)) {
+				return current;
+			}
+		}
+
+		return null;
+	}
+}
@@ -9,6 +9,7 @@ import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.select.Elements;
 
+import com.google.common.collect.Maps;
 import com.google.common.net.MediaType;
 
 import logicanalyser.Interval;
@@ -16,7 +17,7 @@ import logicanalyser.MetricMap;
 import logicanalyser.MetricProducer;
 import logicanalyser.MetricValue;
 import logicanalyser.languages.MetricContext;
-import logicanalyser.util.CountingMap;
+import logicanalyser.util.ObjectIntCounter;
 
 public class LanguageBreakdown extends MetricProducer<Document> {
 	public LanguageBreakdown() {
@@ -33,7 +34,7 @@ public class LanguageBreakdown extends MetricProducer<Document> {
 		Elements scriptTags = target.select("script");
 		Elements styleTags = target.select("style");
 		
-		CountingMap<MediaType> count = new CountingMap<>();
+		ObjectIntCounter<MediaType> count = new ObjectIntCounter<>();
 		
 		int size = 0;
 		
@@ -75,13 +76,10 @@ public class LanguageBreakdown extends MetricProducer<Document> {
 		
 		toPercentages(count, totalSize);
 		
-		return new MetricMap(
-			getMetricName(),
-			count.toMap(
-				MediaType::subtype,
-				MetricValue::new
-			)
-		);
+		Map<String, MetricValue> values = Maps.newHashMap();
+		count.forEach((type, value) -> values.put(type.subtype(), new MetricValue(value)));
+		
+		return new MetricMap(getMetricName(), values);
 	}
 	
 	private Interval innerInterval(Element element) {
@@ -96,8 +94,9 @@ public class LanguageBreakdown extends MetricProducer<Document> {
 		return new Interval(start, end);
 	}
 	
-	private void toPercentages(CountingMap<MediaType> map, int totalSize) {
-		Map<MediaType, Float> values = map.toMap(value -> value / (float)totalSize * 100);
+	private void toPercentages(ObjectIntCounter<MediaType> map, int totalSize) {
+		Map<MediaType, Float> values = Maps.newLinkedHashMap();
+		map.forEach((type, value) -> values.put(type, value / (float)totalSize * 100));
 		
 		TreeMap<Float, MediaType> ordered = new TreeMap<>((f1, f2) -> -Float.compare(f1, f2));
 		
@@ -0,0 +1,163 @@
+package logicanalyser.languages.html;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+
+import com.google.common.collect.Maps;
+import com.google.common.net.MediaType;
+
+/**
+ * The ranges of an HTML document that contain another language, from the
+ * text of {@code <script>} and {@code <style>} tags.
+ * Every range is found once from a {@link NodeIndex}, so finding the language
+ * at an offset is a binary search.
+ *
+ * Lookups do not change the instance, so it can be shared between threads
+ * once created, such as by the aggregators of parallel chunks.
+ */
+public class LanguageRegions {
+	private final NodeIndex index;
+	/**
+	 * Also filled by lookups when the positions are out of order
+	 */
+	private final ConcurrentMap<String, MediaType> parsedTypes;
+
+	private int[] starts;
+	private int[] ends;
+	private MediaType[] types;
+	private int count;
+
+	/**
+	 * Finds the ranges in an indexed document
+	 * @param index The node index of the document
+	 */
+	public LanguageRegions(NodeIndex index) {
+		this.index = index;
+		parsedTypes = Maps.newConcurrentMap();
+
+		if (index.isOrdered()) {
+			findRegions();
+		}
+	}
+
+	private void findRegions() {
+		starts = new int[8];
+		ends = new int[8];
+		types = new MediaType[8];
+
+		for (int i = 0; i < index.size(); ++i) {
+			MediaType type = languageOf(index.getNode(i));
+			if (type == MediaType.HTML_UTF_8) {
+				continue;
+			}
+
+			// Offsets that land on an ancestor of this node through first
+			// children resolve to this node, so the range starts at the highest one
+			int top = i;
+			while (top > 0 && index.getParent(top) == top - 1) {
+				--top;
+			}
+
+			int start = top == 0 ? 0 : index.getStart(top);
+			int end = i + 1 < index.size() ? index.getStart(i + 1) : Integer.MAX_VALUE;
+			if (start >= end) {
+				continue;
+			}
+
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+				ends = Arrays.copyOf(ends, count * 2);
+				types = Arrays.copyOf(types, count * 2);
+			}
+
+			starts[count] = start;
+			ends[count] = end;
+			types[count] = type;
+			++count;
+		}
+	}
+
+	/**
+	 * Gets the language at an offset
+	 * @param offset The offset in the content
+	 * @return The language, which is HTML outside of any range
+	 */
+	public MediaType getLanguageAt(int offset) {
+		if (starts == null) {
+			// Positions out of order, so ranges cannot be used
+			Node node = index.getNodeAt(offset);
+			return node == null ? MediaType.HTML_UTF_8 : languageOf(node);
+		}
+
+		int region = findRegion(offset);
+		if (region >= 0 && offset < ends[region]) {
+			return types[region];
+		} else {
+			return MediaType.HTML_UTF_8;
+		}
+	}
+
+	/**
+	 * Gets the number of ranges
+	 * @return The number of ranges, or 0 if they could not be found
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Finds the last range starting at or before the offset
+	 */
+	private int findRegion(int offset) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low - 1;
+	}
+
+	private MediaType languageOf(Node node) {
+		if (node instanceof TextNode) {
+			if (node.parent() instanceof Element) {
+				Element parent = (Element)node.parent();
+				if (parent.tagName().equals("script")) {
+					if (parent.hasAttr("type")) {
+						return parseType(parent.attr("type"));
+					}
+
+					return MediaType.JAVASCRIPT_UTF_8;
+				} else if (parent.tagName().equals("style")) {
+					return MediaType.CSS_UTF_8;
+				}
+			}
+		}
+
+		return MediaType.HTML_UTF_8;
+	}
+
+	private MediaType parseType(String type) {
+		MediaType parsed = parsedTypes.get(type);
+		if (parsed == null) {
+			try {
+				parsed = MediaType.parse(type);
+			} catch (IllegalArgumentException e) {
+				parsed = MediaType.JAVASCRIPT_UTF_8;
+			}
+
+			parsedTypes.putIfAbsent(type, parsed);
+		}
+
+		return parsed;
+	}
+}
@@ -0,0 +1,249 @@
+package logicanalyser.languages.html;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * A flattened view of every node in a document, used to find nodes by offset.
+ * Nodes are numbered in document order, not including the document itself.
+ * Their source positions and parents are kept in arrays, so finding the
+ * node at an offset is a binary search rather than a walk of the tree.
+ */
+public class NodeIndex {
+	private final Node[] nodes;
+	private final int[] starts;
+	private final int[] ends;
+	private final int[] parents;
+	private final int[] subtreeEnds;
+
+	/**
+	 * For each node, the node reached by following first children down to a leaf
+	 */
+	private final int[] firstLeaves;
+
+	/**
+	 * False if the source positions are not in document order,
+	 * in which case the tree is searched instead
+	 */
+	private final boolean ordered;
+
+	/**
+	 * Indexes a document
+	 * @param document The document. Its nodes must not change afterwards
+	 */
+	public NodeIndex(Document document) {
+		Preconditions.checkNotNull(document);
+
+		Builder builder = new Builder();
+		NodeTraversor.traverse(builder, document);
+
+		int size = builder.nodes.size();
+		nodes = builder.nodes.toArray(new Node[size]);
+		starts = Arrays.copyOf(builder.starts, size);
+		ends = Arrays.copyOf(builder.ends, size);
+		parents = Arrays.copyOf(builder.parents, size);
+		subtreeEnds = Arrays.copyOf(builder.subtreeEnds, size);
+
+		firstLeaves = new int[size];
+		for (int i = size - 1; i >= 0; --i) {
+			if (nodes[i].childNodeSize() > 0) {
+				// The first child always follows its parent
+				firstLeaves[i] = firstLeaves[i + 1];
+			} else {
+				firstLeaves[i] = i;
+			}
+		}
+
+		boolean sorted = true;
+		for (int i = 1; i < size && sorted; ++i) {
+			sorted = starts[i - 1] <= starts[i];
+		}
+		ordered = sorted;
+	}
+
+	/**
+	 * Gets the number of indexed nodes
+	 * @return The number of nodes
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	public Node getNode(int index) {
+		return nodes[index];
+	}
+
+	public int getStart(int index) {
+		return starts[index];
+	}
+
+	public int getEnd(int index) {
+		return ends[index];
+	}
+
+	/**
+	 * Gets the parent of a node
+	 * @param index The index of the node
+	 * @return The index of the parent, or -1 if the parent is the document
+	 */
+	public int getParent(int index) {
+		return parents[index];
+	}
+
+	/**
+	 * Checks if the source positions of the nodes are in document order.
+	 * If they are not, {@link #findDeepest(int)} has to search the tree.
+	 * @return True if the starts never decrease
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Gets the end of the subtree of a node
+	 * @param index The index of the node
+	 * @return The index after the last descendant of the node, which is its next sibling if it has one
+	 */
+	public int getSubtreeEnd(int index) {
+		return subtreeEnds[index];
+	}
+
+	/**
+	 * Finds the deepest node at an offset.
+	 * If the offset falls between nodes, the earlier node is used, or the first
+	 * node if the offset is before any of them.
+	 * If the found node has children, the first leaf below it is used.
+	 * @param offset The offset in the content
+	 * @return The index of the node, or -1 if the document is empty
+	 */
+	public int findDeepest(int offset) {
+		if (nodes.length == 0) {
+			return -1;
+		}
+
+		if (!ordered) {
+			return searchTree(offset);
+		}
+
+		// Find the last node starting at or before the offset
+		int low = 0;
+		int high = nodes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] <= offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		int found = Math.max(0, low - 1);
+		return firstLeaves[found];
+	}
+
+	/**
+	 * Finds the deepest node at an offset
+	 * @param offset The offset in the content
+	 * @return The node, or null if the document is empty
+	 * @see #findDeepest(int)
+	 */
+	public Node getNodeAt(int offset) {
+		int found = findDeepest(offset);
+		if (found == -1) {
+			return null;
+		} else {
+			return nodes[found];
+		}
+	}
+
+	/**
+	 * Searches one level of the tree at a time, for positions that are out of order
+	 */
+	private int searchTree(int offset) {
+		int best = -1;
+		int first = 0;
+		int parent = -1;
+
+		while (first < nodes.length) {
+			int last = -1;
+			int target = -1;
+			for (int node = first; node < nodes.length && parents[node] == parent; node = subtreeEnds[node]) {
+				if (offset < starts[node]) {
+					target = last == -1 ? node : last;
+					break;
+				} else if (offset < ends[node]) {
+					target = node;
+					break;
+				}
+				last = node;
+			}
+
+			if (target == -1) {
+				target = last;
+			}
+
+			best = target;
+			if (nodes[target].childNodeSize() > 0) {
+				parent = target;
+				first = target + 1;
+			} else {
+				break;
+			}
+		}
+
+		return best;
+	}
+
+	private static class Builder implements NodeVisitor {
+		private final List<Node> nodes = Lists.newArrayList();
+		private int[] starts = new int[64];
+		private int[] ends = new int[64];
+		private int[] parents = new int[64];
+		private int[] subtreeEnds = new int[64];
+
+		/**
+		 * The index of the last node seen at each depth
+		 */
+		private int[] path = new int[16];
+
+		@Override
+		public void head(Node node, int depth) {
+			if (depth == 0) {
+				// The document itself
+				return;
+			}
+
+			int index = nodes.size();
+			if (index == starts.length) {
+				starts = Arrays.copyOf(starts, index * 2);
+				ends = Arrays.copyOf(ends, index * 2);
+				parents = Arrays.copyOf(parents, index * 2);
+				subtreeEnds = Arrays.copyOf(subtreeEnds, index * 2);
+			}
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+			}
+
+			nodes.add(node);
+			starts[index] = node.position().start;
+			ends[index] = node.position().end;
+			parents[index] = depth == 1 ? -1 : path[depth - 1];
+			path[depth] = index;
+		}
+
+		@Override
+		public void tail(Node node, int depth) {
+			if (depth > 0) {
+				subtreeEnds[path[depth]] = nodes.size();
+			}
+		}
+	}
+}
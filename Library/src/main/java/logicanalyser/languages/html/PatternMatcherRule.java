@@ -0,0 +1,262 @@
+package logicanalyser.languages.html;
+
+import java.util.List;
+import java.util.Map;
+
+import org.jsoup.nodes.Element;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+
+import logicanalyser.Rule;
+import logicanalyser.SeverityRating;
+import logicanalyser.config.Details;
+import logicanalyser.config.ElementPattern;
+import logicanalyser.config.RuleDetails;
+import logicanalyser.languages.Context;
+
+/**
+ * Checks many {@link ElementPattern}s at once with a decision table.
+ *
+ * For each tag, the distinct attributes and parent tags used by its patterns
+ * are collected. An element is reduced to a key made of one bit per attribute
+ * and the index of its parent tag, and the patterns matching that key are
+ * worked out once and remembered. Checking an element therefore costs one
+ * attribute lookup per distinct attribute, however many patterns there are.
+ *
+ * Markers are reported under the rule id of each matching pattern.
+ */
+public class PatternMatcherRule extends Rule<Element> {
+	/**
+	 * The most distinct attributes the patterns of one tag may use
+	 */
+	public static final int MAX_ATTRIBUTES_PER_TAG = 32;
+
+	private final Map<String, TagTable> tables;
+
+	/**
+	 * Compiles the patterns
+	 * @param name The name of this rule
+	 * @param patterns The patterns to check
+	 * @throws IllegalArgumentException Thrown if the patterns of a tag use more
+	 * 		than {@link #MAX_ATTRIBUTES_PER_TAG} attributes
+	 */
+	public PatternMatcherRule(String name, Iterable<ElementPattern> patterns) throws IllegalArgumentException {
+		super(Element.class, name, targetTagsOf(patterns));
+
+		ListMultimap<String, ElementPattern> byTag = LinkedListMultimap.create();
+		for (ElementPattern pattern : patterns) {
+			byTag.put(pattern.getTag(), pattern);
+		}
+
+		ImmutableMap.Builder<String, TagTable> builder = ImmutableMap.builder();
+		for (String tag : byTag.keySet()) {
+			builder.put(tag, new TagTable(byTag.get(tag)));
+		}
+
+		tables = builder.build();
+	}
+
+	private static String[] targetTagsOf(Iterable<ElementPattern> patterns) {
+		ImmutableSet.Builder<String> tags = ImmutableSet.builder();
+		for (ElementPattern pattern : patterns) {
+			tags.add(pattern.getTag());
+		}
+
+		return Iterables.toArray(tags.build(), String.class);
+	}
+
+	@Override
+	public void check(Context context, Element target) {
+		TagTable table = tables.get(target.tagName());
+		if (table == null) {
+			return;
+		}
+
+		for (RuleDetails details : table.match(target)) {
+			context.addMarker(target, details);
+		}
+	}
+
+	@Override
+	public Details defaultDetails() {
+		// Markers always use the details of the matching pattern
+		return new Details("Declarative element rules", SeverityRating.Informational);
+	}
+
+	/**
+	 * The patterns of a single tag
+	 */
+	private static class TagTable {
+		private static final RuleDetails[] NO_MATCHES = new RuleDetails[0];
+		private static final int INITIAL_DECISIONS = 16;
+
+		private final String[] attributes;
+		private final List<String> parentTags;
+
+		private final RuleDetails[] patternDetails;
+		private final int[] requiredMasks;
+		private final int[] forbiddenMasks;
+		private final int[] parentIndexes;
+
+		/**
+		 * The details of the matching patterns by key, filled in as keys are
+		 * seen. This is an open-addressing table that is at most half full. Slots only ever go
+		 * from empty to a complete decision, so lookups need no lock, and a
+		 * lookup that misses a decision being added just works it out again.
+		 */
+		private volatile Decision[] decisions;
+		private int decisionCount;
+
+		public TagTable(List<ElementPattern> patterns) {
+			List<String> attributeList = Lists.newArrayList();
+			parentTags = Lists.newArrayList();
+
+			for (ElementPattern pattern : patterns) {
+				for (String attribute : Iterables.concat(pattern.getRequiredAttributes(), pattern.getForbiddenAttributes())) {
+					if (!attributeList.contains(attribute)) {
+						attributeList.add(attribute);
+					}
+				}
+
+				if (pattern.getParentTag() != null && !parentTags.contains(pattern.getParentTag())) {
+					parentTags.add(pattern.getParentTag());
+				}
+			}
+
+			Preconditions.checkArgument(
+				attributeList.size() <= MAX_ATTRIBUTES_PER_TAG,
+				"Too many attributes for tag %s", patterns.get(0).getTag()
+			);
+
+			attributes = attributeList.toArray(new String[attributeList.size()]);
+
+			patternDetails = new RuleDetails[patterns.size()];
+			requiredMasks = new int[patterns.size()];
+			forbiddenMasks = new int[patterns.size()];
+			parentIndexes = new int[patterns.size()];
+
+			for (int i = 0; i < patterns.size(); ++i) {
+				ElementPattern pattern = patterns.get(i);
+
+				patternDetails[i] = pattern.getDetails();
+				requiredMasks[i] = toMask(attributeList, pattern.getRequiredAttributes());
+				forbiddenMasks[i] = toMask(attributeList, pattern.getForbiddenAttributes());
+				// 0 is any parent
+				parentIndexes[i] = pattern.getParentTag() == null ? 0 : parentTags.indexOf(pattern.getParentTag()) + 1;
+			}
+
+			decisions = new Decision[INITIAL_DECISIONS];
+		}
+
+		private static int toMask(List<String> attributes, Iterable<String> names) {
+			int mask = 0;
+			for (String name : names) {
+				mask |= 1 << attributes.indexOf(name);
+			}
+
+			return mask;
+		}
+
+		public RuleDetails[] match(Element element) {
+			int present = 0;
+			for (int i = 0; i < attributes.length; ++i) {
+				if (element.hasAttr(attributes[i])) {
+					present |= 1 << i;
+				}
+			}
+
+			int parent = 0;
+			if (!parentTags.isEmpty() && element.parent() != null) {
+				parent = parentTags.indexOf(element.parent().tagName()) + 1;
+			}
+
+			long key = ((long)parent << 32) | (present & 0xFFFFFFFFL);
+			Decision[] table = decisions;
+			int mask = table.length - 1;
+			for (int slot = hash(key) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+				if (table[slot].key == key) {
+					return table[slot].matches;
+				}
+			}
+
+			return addDecision(key, decide(present, parent));
+		}
+
+		private static int hash(long key) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int)(hash ^ (hash >>> 32));
+		}
+
+		private synchronized RuleDetails[] addDecision(long key, RuleDetails[] matches) {
+			Decision[] table = decisions;
+			if ((decisionCount + 1) * 2 > table.length) {
+				table = rehash(table, table.length * 2);
+			}
+
+			int mask = table.length - 1;
+			int slot = hash(key) & mask;
+			for (; table[slot] != null; slot = (slot + 1) & mask) {
+				if (table[slot].key == key) {
+					// Added by another thread in the meantime
+					return table[slot].matches;
+				}
+			}
+
+			table[slot] = new Decision(key, matches);
+			++decisionCount;
+			decisions = table;
+			return matches;
+		}
+
+		private static Decision[] rehash(Decision[] table, int size) {
+			Decision[] grown = new Decision[size];
+			for (Decision decision : table) {
+				if (decision != null) {
+					int slot = hash(decision.key) & (size - 1);
+					while (grown[slot] != null) {
+						slot = (slot + 1) & (size - 1);
+					}
+					grown[slot] = decision;
+				}
+			}
+
+			return grown;
+		}
+
+		private RuleDetails[] decide(int present, int parent) {
+			List<RuleDetails> matches = Lists.newArrayList();
+			for (int i = 0; i < patternDetails.length; ++i) {
+				if ((present & requiredMasks[i]) == requiredMasks[i]
+					&& (present & forbiddenMasks[i]) == 0
+					&& (parentIndexes[i] == 0 || parentIndexes[i] == parent)) {
+					matches.add(patternDetails[i]);
+				}
+			}
+
+			if (matches.isEmpty()) {
+				return NO_MATCHES;
+			} else {
+				return matches.toArray(new RuleDetails[matches.size()]);
+			}
+		}
+	}
+
+	/**
+	 * The patterns matching one key of a {@link TagTable}
+	 */
+	private static class Decision {
+		private final long key;
+		private final RuleDetails[] matches;
+
+		public Decision(long key, RuleDetails[] matches) {
+			this.key = key;
+			this.matches = matches;
+		}
+	}
+}
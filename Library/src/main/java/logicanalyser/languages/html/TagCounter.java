@@ -1,23 +1,26 @@
 package logicanalyser.languages.html;
 
+import java.util.Optional;
+
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 
 import logicanalyser.Marker;
+import logicanalyser.MetricAggregator;
 import logicanalyser.MetricBase;
 import logicanalyser.MetricMap;
 import logicanalyser.MetricProducer;
 import logicanalyser.MetricValue;
 import logicanalyser.languages.HTMLAnalyser.HTMLMetricContext;
 import logicanalyser.languages.MetricContext;
-import logicanalyser.util.CountingMap;
+import logicanalyser.util.ObjectIntCounter;
 
 /**
  * This metric counts each tag that is present in the 
  * document model.
  */
-public class TagCounter extends MetricProducer<Document> {
+public class TagCounter extends MetricProducer<Document> implements MetricAggregator<Element, ObjectIntCounter<String>> {
 	public TagCounter() {
 		super(Document.class);
 	}
@@ -29,20 +32,47 @@ public class TagCounter extends MetricProducer<Document> {
 
 	@Override
 	public MetricBase produce(MetricContext context, Document document) {
-		CountingMap<String> count = new CountingMap<>();
-		CountingMap<String> errors = new CountingMap<>();
-		CountingMap<String> warnings = new CountingMap<>();
+		ObjectIntCounter<String> count = createState();
 		
-		for (Element element : document.select("*")) {
-			if (element == document) {
-				continue;
-			}
-			
-			count.increment(element.tagName());
+		for (Element element : document.getAllElements()) {
+			accumulate(count, context, element);
+		}
+		
+		return finish(context, count);
+	}
+	
+	@Override
+	public Class<Element> getAggregatedType() {
+		return Element.class;
+	}
+	
+	@Override
+	public ObjectIntCounter<String> createState() {
+		return new ObjectIntCounter<>();
+	}
+	
+	@Override
+	public void accumulate(ObjectIntCounter<String> count, MetricContext context, Element element) {
+		if (element instanceof Document) {
+			return;
 		}
 		
+		count.increment(element.tagName());
+	}
+	
+	@Override
+	public ObjectIntCounter<String> merge(ObjectIntCounter<String> first, ObjectIntCounter<String> second) {
+		first.addAll(second);
+		return first;
+	}
+	
+	@Override
+	public MetricBase finish(MetricContext context, ObjectIntCounter<String> count) {
+		ObjectIntCounter<String> errors = new ObjectIntCounter<>();
+		ObjectIntCounter<String> warnings = new ObjectIntCounter<>();
+		
 		for (Marker marker : context.getMarkers()) {
-			CountingMap<String> target;
+			ObjectIntCounter<String> target;
 			switch (marker.getSeverity()) {
 			case Warning:
 				target = warnings;
@@ -55,18 +85,10 @@ public class TagCounter extends MetricProducer<Document> {
 				continue;
 			}
 			
-			Node node = ((HTMLMetricContext)context).getNodeAt(marker.getLocation().start);
-			
-			while (!(node instanceof Element) && node != document) {
-				node = node.parent();
+			String tag = tagOf(marker, context);
+			if (tag != null) {
+				target.increment(tag);
 			}
-			
-			if (node == document) {
-				continue;
-			}
-			
-			Element errorElement = (Element)node;
-			target.increment(errorElement.tagName());
 		}
 		
 		return new MetricMap(
@@ -80,4 +102,28 @@ public class TagCounter extends MetricProducer<Document> {
 			})
 		);
 	}
+	
+	/**
+	 * Finds the tag a marker belongs to. Markers created for an element
+	 * know its tag, so only other markers are looked up in the document.
+	 * @return The tag, or null if the marker is on the document itself
+	 */
+	private static String tagOf(Marker marker, MetricContext context) {
+		Optional<String> tag = marker.getTagName();
+		if (tag.isPresent()) {
+			return tag.get();
+		}
+		
+		Node node = ((HTMLMetricContext)context).getNodeAt(marker.getLocation().start);
+		
+		while (!(node instanceof Element)) {
+			node = node.parent();
+		}
+		
+		if (node instanceof Document) {
+			return null;
+		}
+		
+		return ((Element)node).tagName();
+	}
 }
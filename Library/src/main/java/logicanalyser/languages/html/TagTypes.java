@@ -3,13 +3,14 @@ package logicanalyser.languages.html;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import logicanalyser.MetricAggregator;
 import logicanalyser.MetricMap;
 import logicanalyser.MetricProducer;
 import logicanalyser.MetricValue;
 import logicanalyser.languages.MetricContext;
-import logicanalyser.util.CountingMap;
+import logicanalyser.util.ObjectIntCounter;
 
-public class TagTypes extends MetricProducer<Document> {
+public class TagTypes extends MetricProducer<Document> implements MetricAggregator<Element, ObjectIntCounter<String>> {
 	public TagTypes() {
 		super(Document.class);
 	}
@@ -21,20 +22,46 @@ public class TagTypes extends MetricProducer<Document> {
 	
 	@Override
 	public MetricMap produce(MetricContext context, Document target) {
-		CountingMap<String> count = new CountingMap<>();
+		ObjectIntCounter<String> count = createState();
 		
-		for (Element element : target.select("*")) {
-			if (element == target) {
-				continue;
-			}
-			
-			if (element.isBlock()) {
-				count.increment("block");
-			} else {
-				count.increment("inline");
-			}
+		for (Element element : target.getAllElements()) {
+			accumulate(count, context, element);
 		}
 		
+		return finish(context, count);
+	}
+	
+	@Override
+	public Class<Element> getAggregatedType() {
+		return Element.class;
+	}
+	
+	@Override
+	public ObjectIntCounter<String> createState() {
+		return new ObjectIntCounter<>();
+	}
+	
+	@Override
+	public void accumulate(ObjectIntCounter<String> count, MetricContext context, Element element) {
+		if (element instanceof Document) {
+			return;
+		}
+		
+		if (element.isBlock()) {
+			count.increment("block");
+		} else {
+			count.increment("inline");
+		}
+	}
+	
+	@Override
+	public ObjectIntCounter<String> merge(ObjectIntCounter<String> first, ObjectIntCounter<String> second) {
+		first.addAll(second);
+		return first;
+	}
+	
+	@Override
+	public MetricMap finish(MetricContext context, ObjectIntCounter<String> count) {
 		return new MetricMap(
 			getMetricName(), 
 			count.toMap(MetricValue::new)
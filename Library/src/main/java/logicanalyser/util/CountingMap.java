@@ -9,6 +9,10 @@ import org.apache.commons.lang3.mutable.MutableInt;
 import com.google.common.base.Function;
 import com.google.common.collect.Maps;
 
+/**
+ * @deprecated Boxes every count. Use {@link ObjectIntCounter} instead.
+ */
+@Deprecated
 public class CountingMap<K> {
 	private final Map<K, MutableInt> count;
 	
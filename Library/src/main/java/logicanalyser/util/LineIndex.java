@@ -0,0 +1,167 @@
+package logicanalyser.util;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Maps between character offsets and lines of a piece of content.
+ * The start of every line is found once, after which conversions are
+ * a lookup or a binary search.
+ *
+ * Lines are split on '\n' only. All lines and columns are 0 based.
+ *
+ * {@link #getLineCount()} matches {@code content.split("\n").length},
+ * which ignores trailing empty lines. Every other method also accepts
+ * those trailing lines.
+ */
+public class LineIndex {
+	private final String content;
+	private final int[] lineStarts;
+	private final int lineCount;
+
+	/**
+	 * Indexes the given content
+	 * @param content The content to index
+	 */
+	public LineIndex(String content) {
+		Preconditions.checkNotNull(content);
+
+		this.content = content;
+
+		int newlines = 0;
+		for (int i = 0; i < content.length(); ++i) {
+			if (content.charAt(i) == '\n') {
+				++newlines;
+			}
+		}
+
+		lineStarts = new int[newlines + 1];
+		int line = 1;
+		for (int i = 0; i < content.length(); ++i) {
+			if (content.charAt(i) == '\n') {
+				lineStarts[line++] = i + 1;
+			}
+		}
+
+		if (content.isEmpty()) {
+			lineCount = 1;
+		} else {
+			// Trailing empty lines are not counted, the same as String.split
+			int count = lineStarts.length;
+			while (count > 0 && getLineLength(count - 1) == 0) {
+				--count;
+			}
+			lineCount = count;
+		}
+	}
+
+	/**
+	 * Gets the content that was indexed
+	 * @return The content
+	 */
+	public String getContent() {
+		return content;
+	}
+
+	/**
+	 * Gets the number of lines, not counting trailing empty lines
+	 * @return The same count as {@code content.split("\n").length}
+	 */
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Gets the offset of the first character of a line
+	 * @param line The line
+	 * @return The offset
+	 */
+	public int getLineStart(int line) {
+		Preconditions.checkElementIndex(line, lineStarts.length);
+		return lineStarts[line];
+	}
+
+	/**
+	 * Gets the offset just after the last character of a line, not including the newline
+	 * @param line The line
+	 * @return The offset
+	 */
+	public int getLineEnd(int line) {
+		Preconditions.checkElementIndex(line, lineStarts.length);
+
+		if (line + 1 < lineStarts.length) {
+			return lineStarts[line + 1] - 1;
+		} else {
+			return content.length();
+		}
+	}
+
+	/**
+	 * Gets the number of characters on a line, not including the newline
+	 * @param line The line
+	 * @return The length
+	 */
+	public int getLineLength(int line) {
+		return getLineEnd(line) - getLineStart(line);
+	}
+
+	/**
+	 * Gets the text of a line, not including the newline
+	 * @param line The line
+	 * @return The text
+	 */
+	public String getLine(int line) {
+		return content.substring(getLineStart(line), getLineEnd(line));
+	}
+
+	/**
+	 * Finds the line containing the character at an offset.
+	 * A newline belongs to the line it ends.
+	 * @param offset The offset, up to and including the length of the content
+	 * @return The line
+	 */
+	public int getLineOf(int offset) {
+		Preconditions.checkPositionIndex(offset, content.length());
+
+		int found = Arrays.binarySearch(lineStarts, offset);
+		if (found >= 0) {
+			return found;
+		} else {
+			// The line before the insertion point
+			return -found - 2;
+		}
+	}
+
+	/**
+	 * Finds the column of the character at an offset
+	 * @param offset The offset, up to and including the length of the content
+	 * @return The column
+	 */
+	public int getColumnOf(int offset) {
+		return offset - lineStarts[getLineOf(offset)];
+	}
+
+	/**
+	 * Converts a line and column into an offset
+	 * @param line The line
+	 * @param column The column. This is not checked against the length of the line
+	 * @return The offset
+	 */
+	public int toOffset(int line, int column) {
+		return getLineStart(line) + column;
+	}
+
+	/**
+	 * Creates the lines as separate strings
+	 * @return A new array equal to {@code content.split("\n")}
+	 */
+	public String[] toLines() {
+		String[] lines = new String[lineCount];
+		for (int i = 0; i < lineCount; ++i) {
+			lines[i] = getLine(i);
+		}
+
+		return lines;
+	}
+}
@@ -0,0 +1,251 @@
+package logicanalyser.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Counts occurrences of keys without boxing the counts.
+ *
+ * The keys and counts are kept in parallel arrays in the order the keys
+ * were first added, and an open-addressing table of indexes into those
+ * arrays finds the entry of a key. A new key costs no allocation unless
+ * the arrays have to grow, and a repeated key none at all.
+ *
+ * Once counting is done, {@link #toMap(IntFunction)} freezes the counts
+ * into an immutable map that keeps no reference to this counter.
+ *
+ * Keys cannot be null, and single keys cannot be removed.
+ * This class is not safe to use from several threads at once.
+ * It can be serialized if its keys can.
+ */
+public class ObjectIntCounter<K> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int MIN_TABLE_SIZE = 8;
+
+	/**
+	 * The index of each entry plus one, or 0 for an empty slot.
+	 * The table is at most half full.
+	 */
+	private int[] table;
+	private int mask;
+
+	private Object[] keys;
+	private int[] hashes;
+	private int[] counts;
+	private int size;
+
+	public ObjectIntCounter() {
+		this(MIN_TABLE_SIZE / 2);
+	}
+
+	/**
+	 * Creates a counter that does not need to grow until it holds the given number of keys
+	 * @param expectedKeys The number of keys
+	 */
+	public ObjectIntCounter(int expectedKeys) {
+		Preconditions.checkArgument(expectedKeys >= 0);
+		allocate(Math.max(MIN_TABLE_SIZE, Integer.highestOneBit(Math.max(expectedKeys, 1) * 2 - 1) * 2));
+	}
+
+	private void allocate(int tableSize) {
+		table = new int[tableSize];
+		mask = tableSize - 1;
+
+		keys = new Object[tableSize / 2];
+		hashes = new int[tableSize / 2];
+		counts = new int[tableSize / 2];
+	}
+
+	public void increment(K key) {
+		// Inserted first, as the insertion may replace the array
+		int index = insert(key);
+		++counts[index];
+	}
+
+	public void add(K key, int toAdd) {
+		int index = insert(key);
+		counts[index] += toAdd;
+	}
+
+	public void set(K key, int toSet) {
+		int index = insert(key);
+		counts[index] = toSet;
+	}
+
+	/**
+	 * Adds every count of another counter to this one
+	 * @param other The other counter
+	 */
+	public void addAll(ObjectIntCounter<? extends K> other) {
+		for (int i = 0; i < other.size; ++i) {
+			int index = insert(other.keys[i], other.hashes[i]);
+			counts[index] += other.counts[i];
+		}
+	}
+
+	/**
+	 * Gets the count of a key
+	 * @param key The key
+	 * @return The count, or 0 if the key was never added
+	 */
+	public int get(Object key) {
+		int index = find(key);
+		return index == -1 ? 0 : counts[index];
+	}
+
+	public boolean containsKey(Object key) {
+		return find(key) != -1;
+	}
+
+	/**
+	 * Gets the number of distinct keys
+	 * @return The number of keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes every key, keeping the capacity of the counter
+	 */
+	public void clear() {
+		Arrays.fill(table, 0);
+		Arrays.fill(keys, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Calls the consumer with every key and its count, in the order the keys were first added
+	 * @param consumer The consumer
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super K> consumer) {
+		for (int i = 0; i < size; ++i) {
+			consumer.accept((K)keys[i], counts[i]);
+		}
+	}
+
+	/**
+	 * Freezes the counts into an immutable map, in the order the keys were first added
+	 * @param transformer Creates the value of a count
+	 * @return The map
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> ImmutableMap<K, V> toMap(IntFunction<? extends V> transformer) {
+		ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+		for (int i = 0; i < size; ++i) {
+			builder.put((K)keys[i], transformer.apply(counts[i]));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Freezes the counts into an immutable map, in the order the keys were first added
+	 * @param transformer Creates the value of a key and its count
+	 * @return The map
+	 */
+	@SuppressWarnings("unchecked")
+	public <V> ImmutableMap<K, V> toMapWithKey(EntryFunction<? super K, ? extends V> transformer) {
+		ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+		for (int i = 0; i < size; ++i) {
+			builder.put((K)keys[i], transformer.apply((K)keys[i], counts[i]));
+		}
+
+		return builder.build();
+	}
+
+	private static int hash(Object key) {
+		// Spreads the low bits, as the table is indexed by them
+		int hash = key.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	private int find(Object key) {
+		if (key == null) {
+			return -1;
+		}
+
+		int hash = hash(key);
+		for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+			if (hashes[index] == hash && keys[index].equals(key)) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	private int insert(Object key) {
+		Preconditions.checkNotNull(key);
+		return insert(key, hash(key));
+	}
+
+	/**
+	 * Finds the index of a key, adding it with a count of 0 if it is not present
+	 */
+	private int insert(Object key, int hash) {
+		int slot = hash & mask;
+		for (; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+			if (hashes[index] == hash && keys[index].equals(key)) {
+				return index;
+			}
+		}
+
+		if (size == keys.length) {
+			grow();
+
+			slot = hash & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		int index = size++;
+		keys[index] = key;
+		hashes[index] = hash;
+		counts[index] = 0;
+		table[slot] = index + 1;
+		return index;
+	}
+
+	private void grow() {
+		Object[] oldKeys = keys;
+		int[] oldHashes = hashes;
+		int[] oldCounts = counts;
+
+		allocate(table.length * 2);
+		System.arraycopy(oldKeys, 0, keys, 0, size);
+		System.arraycopy(oldHashes, 0, hashes, 0, size);
+		System.arraycopy(oldCounts, 0, counts, 0, size);
+
+		for (int index = 0; index < size; ++index) {
+			int slot = hashes[index] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = index + 1;
+		}
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer<K> {
+		void accept(K key, int count);
+	}
+
+	@FunctionalInterface
+	public interface EntryFunction<K, V> {
+		V apply(K key, int count);
+	}
+}
@@ -0,0 +1,163 @@
+package logicanalyser.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Estimates quantiles of a stream of non-negative values, such as line
+ * lengths, with a bounded relative error.
+ *
+ * Values are counted in buckets whose bounds grow geometrically, so the
+ * value returned for a quantile is within the relative accuracy of a
+ * value at that rank. The number of buckets only grows with the logarithm
+ * of the largest value. The smallest and largest values are kept exactly.
+ *
+ * Sketches of the same accuracy can be merged, which gives exactly the
+ * same sketch as adding the values of both to one.
+ */
+public class QuantileSketch implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final double relativeAccuracy;
+	private final double gamma;
+	private final double logGamma;
+
+	private long zeroCount;
+	/**
+	 * Bucket i counts the values in (gamma^(i-1), gamma^i]
+	 */
+	private long[] counts;
+
+	private long count;
+	private long min;
+	private long max;
+
+	/**
+	 * Creates an empty sketch
+	 * @param relativeAccuracy The largest relative error of a quantile, such as 0.01
+	 */
+	public QuantileSketch(double relativeAccuracy) {
+		Preconditions.checkArgument(relativeAccuracy > 0 && relativeAccuracy < 1, "The accuracy must be between 0 and 1");
+
+		this.relativeAccuracy = relativeAccuracy;
+		gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		logGamma = Math.log(gamma);
+
+		counts = new long[0];
+		min = Long.MAX_VALUE;
+		max = Long.MIN_VALUE;
+	}
+
+	public double getRelativeAccuracy() {
+		return relativeAccuracy;
+	}
+
+	public void add(long value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Adds the same value several times
+	 * @param value The value, which cannot be negative
+	 * @param times The number of times to add it
+	 */
+	public void add(long value, long times) {
+		Preconditions.checkArgument(value >= 0, "Only non-negative values can be added");
+		Preconditions.checkArgument(times >= 0);
+		if (times == 0) {
+			return;
+		}
+
+		if (value == 0) {
+			zeroCount += times;
+		} else {
+			int index = (int)Math.ceil(Math.log(value) / logGamma);
+			ensureBucket(index);
+			counts[index] += times;
+		}
+
+		count += times;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	private void ensureBucket(int index) {
+		if (index >= counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length * 2));
+		}
+	}
+
+	/**
+	 * Adds every value of another sketch to this one
+	 * @param other A sketch of the same accuracy
+	 */
+	public void merge(QuantileSketch other) {
+		Preconditions.checkArgument(other.relativeAccuracy == relativeAccuracy, "Cannot merge sketches of different accuracy");
+		if (other.count == 0) {
+			return;
+		}
+
+		ensureBucket(other.counts.length - 1);
+		for (int i = 0; i < other.counts.length; ++i) {
+			counts[i] += other.counts[i];
+		}
+
+		zeroCount += other.zeroCount;
+		count += other.count;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Gets the number of values added
+	 * @return The count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getMin() {
+		Preconditions.checkState(count > 0, "The sketch is empty");
+		return min;
+	}
+
+	public long getMax() {
+		Preconditions.checkState(count > 0, "The sketch is empty");
+		return max;
+	}
+
+	/**
+	 * Estimates the value at a quantile
+	 * @param quantile The quantile, from 0 for the smallest value to 1 for the largest
+	 * @return The estimated value
+	 */
+	public double getQuantile(double quantile) {
+		Preconditions.checkArgument(quantile >= 0 && quantile <= 1, "The quantile must be from 0 to 1");
+		Preconditions.checkState(count > 0, "The sketch is empty");
+
+		if (quantile == 0) {
+			return min;
+		} else if (quantile == 1) {
+			return max;
+		}
+
+		long rank = (long)(quantile * (count - 1));
+		if (rank < zeroCount) {
+			return 0;
+		}
+
+		long seen = zeroCount;
+		for (int i = 0; i < counts.length; ++i) {
+			seen += counts[i];
+			if (seen > rank) {
+				// The point of the bucket with the same relative error to both bounds
+				double value = 2 * Math.pow(gamma, i) / (gamma + 1);
+				return Math.max(min, Math.min(max, value));
+			}
+		}
+
+		return max;
+	}
+}
@@ -1,8 +1,29 @@
 package logicanalyser;
 
 import com.google.common.net.MediaType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import logicanalyser.config.Details;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.config.RuleDetails;
+import logicanalyser.languages.Context;
+import logicanalyser.languages.HTMLAnalyser;
 import logicanalyser.languages.LanguageBase;
+import org.jsoup.nodes.Element;
 import static org.junit.Assert.*;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.runners.Enclosed;
@@ -28,6 +49,7 @@ public class LogicAnalyserTest {
 			// Answer is required due to generic issues with thenReturn
 			when(ruleset.getLanguage()).then(invocation -> language.getClass());
 			when(language.getName()).thenReturn("Test");
+			when(language.compileRules(any())).thenCallRealMethod();
 			
 			analyser.registerLanguageProcessor(language);
 			analyser.registerRuleset(ruleset);
@@ -63,6 +85,188 @@ public class LogicAnalyserTest {
 		}
 	}
 	
+	public static class Batch {
+		private LogicAnalyser analyser;
+		private ExecutorService pool;
+		
+		@Before
+		public void setup() {
+			analyser = new LogicAnalyser();
+			pool = BatchExecutors.fixed(3);
+		}
+		
+		@After
+		public void teardown() {
+			pool.shutdownNow();
+		}
+		
+		@Test
+		public void resultsAreInInputOrder() throws Exception {
+			List<AnalysisInput> inputs = new ArrayList<>();
+			for (int i = 0; i < 50; ++i) {
+				inputs.add(new AnalysisInput(MediaType.HTML_UTF_8, "<p>" + i + "</p>", i));
+			}
+			
+			List<AnalysisResult> results = analyser.analyseBatch(inputs, pool, 4);
+			
+			assertEquals(inputs.size(), results.size());
+			for (int i = 0; i < inputs.size(); ++i) {
+				assertEquals(i, results.get(i).getIndex());
+				assertSame(inputs.get(i), results.get(i).getInput());
+				assertTrue(results.get(i).isSuccessful());
+				assertNotNull(results.get(i).getReport());
+			}
+		}
+		
+		@Test
+		public void failuresAreRecordedPerInput() throws Exception {
+			List<AnalysisInput> inputs = Arrays.asList(
+				new AnalysisInput(MediaType.HTML_UTF_8, "<p></p>"),
+				new AnalysisInput(MediaType.JSON_UTF_8, "{}"),
+				new AnalysisInput(MediaType.HTML_UTF_8, "<div></div>")
+			);
+			
+			List<AnalysisResult> results = analyser.analyseBatch(inputs, pool, 2);
+			
+			assertTrue(results.get(0).isSuccessful());
+			assertFalse(results.get(1).isSuccessful());
+			assertNull(results.get(1).getReport());
+			assertTrue(results.get(1).getFailure() instanceof IllegalArgumentException);
+			assertTrue(results.get(2).isSuccessful());
+		}
+		
+		@Test
+		public void streamedResultsCoverEveryInput() throws Exception {
+			List<AnalysisInput> inputs = new ArrayList<>();
+			for (int i = 0; i < 20; ++i) {
+				inputs.add(new AnalysisInput(MediaType.CSS_UTF_8, "a { color: red; }"));
+			}
+			
+			Set<Integer> seen = new HashSet<>();
+			analyser.analyseBatch(inputs, BatchExecutors.forkJoin(), 2, result -> {
+				assertTrue(seen.add(result.getIndex()));
+			});
+			
+			assertEquals(inputs.size(), seen.size());
+		}
+		
+		@Test(timeout = 60000)
+		public void rejectedTaskWaitsForStartedOnes() throws Exception {
+			List<AnalysisInput> inputs = new ArrayList<>();
+			for (int i = 0; i < 5; ++i) {
+				inputs.add(new AnalysisInput(MediaType.HTML_UTF_8, "<p>" + i + "</p>"));
+			}
+			
+			CountDownLatch rejected = new CountDownLatch(1);
+			AtomicInteger submitted = new AtomicInteger();
+			Executor executor = task -> {
+				if (submitted.incrementAndGet() > 2) {
+					rejected.countDown();
+					throw new RejectedExecutionException();
+				}
+				
+				// The tasks only finish after the rejection
+				pool.execute(() -> {
+					try {
+						rejected.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					task.run();
+				});
+			};
+			
+			AtomicInteger consumed = new AtomicInteger();
+			try {
+				analyser.analyseBatch(inputs, executor, 4, result -> consumed.incrementAndGet());
+				fail();
+			} catch (RejectedExecutionException e) {
+				assertEquals(2, consumed.get());
+			}
+			
+			assertEquals(3, submitted.get());
+		}
+	}
+	
+	public static class Concurrency {
+		private static final String DOCUMENT = "<html><head></head><body><p>a</p><div><p>b</p></div></body></html>";
+		
+		@Test(timeout = 60000)
+		public void registrationDuringAnalysisIsSafe() throws Exception {
+			LogicAnalyser analyser = new LogicAnalyser();
+			RuleConfiguration configuration = new RuleConfiguration();
+			analyser.applyRuleConfiguration(configuration);
+			
+			Ruleset ruleset = new ParagraphRuleset();
+			AtomicBoolean running = new AtomicBoolean(true);
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			
+			try {
+				List<Future<Integer>> results = new ArrayList<>();
+				for (int i = 0; i < 4; ++i) {
+					results.add(pool.submit(() -> {
+						int analyses = 0;
+						while (running.get() || analyses == 0) {
+							Report report = analyser.analyseContent(MediaType.HTML_UTF_8, DOCUMENT);
+							
+							// Either the ruleset was in the snapshot or it was not, never part of it
+							int markers = report.getAllMarkers().size();
+							assertTrue("Unexpected marker count " + markers, markers == 0 || markers == 2);
+							++analyses;
+						}
+						
+						return analyses;
+					}));
+				}
+				
+				for (int i = 0; i < 500; ++i) {
+					analyser.registerRuleset(ruleset);
+					configuration.add(new RuleDetails("test.rule" + i, "Configured", SeverityRating.Warning));
+					analyser.deregisterRuleset(ruleset);
+				}
+				
+				running.set(false);
+				
+				for (Future<Integer> result : results) {
+					assertTrue(result.get() > 0);
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		
+		private static class ParagraphRuleset implements Ruleset {
+			private final List<Rule<?>> rules = Arrays.asList(
+				new Rule<Element>(Element.class, "test.paragraph", "p") {
+					@Override
+					public void check(Context context, Element target) {
+						context.addMarker(target);
+					}
+					
+					@Override
+					public Details defaultDetails() {
+						return new Details("Paragraph", SeverityRating.Warning);
+					}
+				}
+			);
+			
+			@Override
+			public String getCategoryName() {
+				return "Test";
+			}
+			
+			@Override
+			public Class<? extends LanguageBase> getLanguage() {
+				return HTMLAnalyser.class;
+			}
+			
+			@Override
+			public List<Rule<?>> getContainedRules() {
+				return rules;
+			}
+		}
+	}
+	
 	public static class Execution {
 		private LogicAnalyser analyser;
 		private LanguageBase jsLanguage;
@@ -79,6 +283,7 @@ public class LogicAnalyserTest {
 			
 			when(jsLanguage.canRulesAccept(any())).thenReturn(false);
 			when(jsLanguage.canRulesAccept(String.class)).thenReturn(true);
+			when(jsLanguage.compileRules(any())).thenCallRealMethod();
 			
 			jsonLanguage = mock(JSONLang.class);
 			when(jsonLanguage.doesAccept(any(MediaType.class))).thenReturn(false);
@@ -87,6 +292,7 @@ public class LogicAnalyserTest {
 			when(jsonLanguage.canRulesAccept(any())).thenReturn(false);
 			when(jsonLanguage.canRulesAccept(String.class)).thenReturn(true);
 			when(jsonLanguage.getName()).thenReturn("JSON");
+			when(jsonLanguage.compileRules(any())).thenCallRealMethod();
 			
 			analyser.registerLanguageProcessor(jsLanguage);
 			analyser.registerLanguageProcessor(jsonLanguage);
@@ -0,0 +1,46 @@
+package logicanalyser;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PackedMetricListTest {
+	@Test
+	public void readsLikeMetricList() {
+		PackedMetricList metric = new PackedMetricList("metric.name", new int[] { 1, 2 }, new int[] { 3, 4 });
+		
+		assertEquals("metric.name", metric.getName());
+		assertEquals(2, metric.size());
+		assertEquals(2, metric.getColumnCount());
+		
+		MetricValue second = metric.getValue(1);
+		assertEquals(2, second.size());
+		assertEquals(2, second.get(0));
+		assertEquals(4, second.get(1));
+		
+		MetricValue[] values = metric.getValues();
+		assertEquals(2, values.length);
+		assertEquals(3, values[0].get(1));
+	}
+	
+	@Test
+	public void givesBulkAccess() {
+		PackedMetricList metric = new PackedMetricList("metric.name", new int[] { 1, 2, 3 }, new int[] { 4, 5, 6 });
+		
+		assertEquals(5, metric.get(1, 1));
+		assertArrayEquals(new int[] { 4, 5, 6 }, metric.getColumn(1));
+		
+		int[] target = new int[2];
+		metric.copyColumn(0, 1, target, 0, 2);
+		assertArrayEquals(new int[] { 2, 3 }, target);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsInconsistentColumnLengths() {
+		new PackedMetricList("metric.name", new int[] { 1, 2 }, new int[] { 3 });
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingColumns() {
+		new PackedMetricList("metric.name");
+	}
+}
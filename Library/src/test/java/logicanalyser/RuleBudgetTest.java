@@ -0,0 +1,222 @@
+package logicanalyser;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Element;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+import com.google.common.net.MediaType;
+
+import logicanalyser.config.Details;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.Context;
+import logicanalyser.languages.HTMLAnalyser;
+import logicanalyser.languages.LanguageBase;
+
+public class RuleBudgetTest {
+	private static final String DOCUMENT = "<html><body><p>a</p><p>b</p><p>c</p><p>d</p></body></html>";
+	
+	private FakeTicker ticker;
+	private SlowRule rule;
+	private Ruleset ruleset;
+	private HTMLAnalyser analyser;
+	private LogicAnalyser logicAnalyser;
+	
+	@Before
+	public void setup() {
+		ticker = new FakeTicker();
+		rule = new SlowRule(ticker);
+		ruleset = new Ruleset() {
+			@Override
+			public String getCategoryName() {
+				return "Test";
+			}
+			
+			@Override
+			public Class<? extends LanguageBase> getLanguage() {
+				return HTMLAnalyser.class;
+			}
+			
+			@Override
+			public List<Rule<?>> getContainedRules() {
+				return Arrays.asList(rule);
+			}
+		};
+		
+		analyser = new HTMLAnalyser();
+		logicAnalyser = mock(LogicAnalyser.class);
+		when(logicAnalyser.getRuleConfiguration())
+			.thenReturn(RuleConfiguration.DEFAULT);
+	}
+	
+	private Report analyse() {
+		return analyser.process(MediaType.HTML_UTF_8, DOCUMENT, Arrays.asList(ruleset), logicAnalyser);
+	}
+	
+	private static long countNotices(Report report) {
+		return report.getAllMarkers().stream()
+			.filter(marker -> marker.getSeverity() == SeverityRating.Informational)
+			.count();
+	}
+	
+	@Test
+	public void unlimitedRulesRunOnEveryTarget() {
+		when(logicAnalyser.getRuleBudget()).thenReturn(RuleBudget.UNLIMITED);
+		
+		Report report = analyse();
+		
+		assertEquals(4, rule.calls);
+		assertEquals(0, countNotices(report));
+	}
+	
+	@Test
+	public void rulesAreStoppedOverBudget() {
+		when(logicAnalyser.getRuleBudget()).thenReturn(
+			RuleBudget.builder(25, TimeUnit.MILLISECONDS)
+				.ticker(ticker)
+				.build()
+		);
+		
+		Report report = analyse();
+		
+		// 10ms per call, so the third call goes over
+		assertEquals(3, rule.calls);
+		assertEquals(1, countNotices(report));
+	}
+	
+	@Test
+	public void breakerTripsAndResets() {
+		RuleBudget budget = RuleBudget.builder(25, TimeUnit.MILLISECONDS)
+			.tripAfter(2)
+			.cooldown(1, TimeUnit.SECONDS)
+			.ticker(ticker)
+			.build();
+		when(logicAnalyser.getRuleBudget()).thenReturn(budget);
+		
+		analyse();
+		assertFalse(budget.isTripped(rule));
+		analyse();
+		assertTrue(budget.isTripped(rule));
+		
+		rule.calls = 0;
+		Report skipped = analyse();
+		assertEquals(0, rule.calls);
+		assertEquals(1, countNotices(skipped));
+		
+		// After the cooldown a fast run closes the breaker
+		ticker.time += TimeUnit.SECONDS.toNanos(1);
+		rule.delay = 0;
+		analyse();
+		assertEquals(4, rule.calls);
+		assertFalse(budget.isTripped(rule));
+	}
+	
+	@Test
+	public void onlyOneDocumentProbesAfterTheCooldown() {
+		RuleBudget budget = RuleBudget.builder(25, TimeUnit.MILLISECONDS)
+			.tripAfter(2)
+			.cooldown(1, TimeUnit.SECONDS)
+			.ticker(ticker)
+			.build();
+		when(logicAnalyser.getRuleBudget()).thenReturn(budget);
+		
+		analyse();
+		analyse();
+		assertTrue(budget.isTripped(rule));
+		
+		ticker.time += TimeUnit.SECONDS.toNanos(1);
+		RuleBudget.Usage probe = budget.startDocument();
+		RuleBudget.Usage other = budget.startDocument();
+		assertFalse(probe.forRule(rule).isStopped());
+		assertTrue(other.forRule(rule).isStopped());
+		assertTrue(budget.isTripped(rule));
+		
+		// The skipped document does not decide anything
+		other.finish();
+		assertTrue(budget.isTripped(rule));
+		
+		probe.finish();
+		assertFalse(budget.isTripped(rule));
+		assertFalse(budget.startDocument().forRule(rule).isStopped());
+	}
+	
+	@Test
+	public void failedProbeTripsAgain() {
+		RuleBudget budget = RuleBudget.builder(25, TimeUnit.MILLISECONDS)
+			.tripAfter(2)
+			.cooldown(1, TimeUnit.SECONDS)
+			.ticker(ticker)
+			.build();
+		when(logicAnalyser.getRuleBudget()).thenReturn(budget);
+		
+		analyse();
+		analyse();
+		
+		// A single overrun of the probe is enough
+		ticker.time += TimeUnit.SECONDS.toNanos(1);
+		rule.calls = 0;
+		analyse();
+		assertEquals(3, rule.calls);
+		assertTrue(budget.isTripped(rule));
+	}
+	
+	@Test
+	public void lostProbeIsReplaced() {
+		RuleBudget budget = RuleBudget.builder(25, TimeUnit.MILLISECONDS)
+			.tripAfter(2)
+			.cooldown(1, TimeUnit.SECONDS)
+			.ticker(ticker)
+			.build();
+		when(logicAnalyser.getRuleBudget()).thenReturn(budget);
+		
+		analyse();
+		analyse();
+		
+		// The probe is never finished, such as when its analysis fails
+		ticker.time += TimeUnit.SECONDS.toNanos(1);
+		assertFalse(budget.startDocument().forRule(rule).isStopped());
+		assertTrue(budget.startDocument().forRule(rule).isStopped());
+		
+		ticker.time += TimeUnit.SECONDS.toNanos(1);
+		assertFalse(budget.startDocument().forRule(rule).isStopped());
+	}
+	
+	private static class FakeTicker extends Ticker {
+		private long time;
+		
+		@Override
+		public long read() {
+			return time;
+		}
+	}
+	
+	private static class SlowRule extends Rule<Element> {
+		private final FakeTicker ticker;
+		private long delay;
+		private int calls;
+		
+		public SlowRule(FakeTicker ticker) {
+			super(Element.class, "slow", "p");
+			this.ticker = ticker;
+			delay = TimeUnit.MILLISECONDS.toNanos(10);
+		}
+		
+		@Override
+		public void check(Context context, Element target) {
+			++calls;
+			ticker.time += delay;
+		}
+		
+		@Override
+		public Details defaultDetails() {
+			return new Details("", SeverityRating.Error);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package logicanalyser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+import logicanalyser.languages.LanguageBase;
+
+public class RulePlanTest {
+	@Test
+	public void groupsRulesByTargetInRulesetOrder() {
+		Rule<String> stringRule1 = mock(Rule.class);
+		Rule<Integer> integerRule = mock(Rule.class);
+		Rule<String> stringRule2 = mock(Rule.class);
+
+		when(stringRule1.getTarget()).thenReturn(String.class);
+		when(integerRule.getTarget()).thenReturn(Integer.class);
+		when(stringRule2.getTarget()).thenReturn(String.class);
+
+		RulePlan plan = new RulePlan(Arrays.asList(
+			new TestRuleset(stringRule1, integerRule),
+			new TestRuleset(stringRule2)
+		));
+
+		assertArrayEquals(new Rule<?>[] {stringRule1, stringRule2}, plan.getRules(String.class));
+		assertArrayEquals(new Rule<?>[] {integerRule}, plan.getRules(Integer.class));
+	}
+
+	@Test
+	public void missingTargetHasNoRules() {
+		RulePlan plan = new RulePlan(Arrays.asList(new TestRuleset()));
+
+		assertEquals(0, plan.getRules(String.class).length);
+	}
+
+	@Test
+	public void iteratesRulesets() {
+		Ruleset ruleset = new TestRuleset();
+		RulePlan plan = new RulePlan(Arrays.asList(ruleset));
+
+		assertEquals(Arrays.asList(ruleset), plan.getRulesets());
+		assertSame(ruleset, plan.iterator().next());
+	}
+
+	private static class TestRuleset implements Ruleset {
+		private final List<Rule<?>> rules;
+
+		public TestRuleset(Rule<?>... rules) {
+			this.rules = Arrays.asList(rules);
+		}
+
+		@Override
+		public String getCategoryName() {
+			return "Test";
+		}
+
+		@Override
+		public Class<? extends LanguageBase> getLanguage() {
+			return LanguageBase.class;
+		}
+
+		@Override
+		public List<Rule<?>> getContainedRules() {
+			return rules;
+		}
+	}
+}
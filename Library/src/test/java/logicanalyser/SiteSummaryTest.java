@@ -0,0 +1,97 @@
+package logicanalyser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class SiteSummaryTest {
+	private static Report page(String... classNames) {
+		Marker error = new Marker(new Interval(0, 1), SeverityRating.Error, "error");
+		error.setRuleId("html.rule");
+		Marker notice = new Marker(new Interval(1, 2), SeverityRating.Informational, "notice");
+		
+		ImmutableMap.Builder<String, MetricValue> classes = ImmutableMap.builder();
+		for (String className : classNames) {
+			classes.put(className, new MetricValue(1));
+		}
+		
+		return new Report(
+			Arrays.asList(
+				new MetricMap("html.tagcount", ImmutableMap.of("div", new MetricValue(3, 0, 1), "p", new MetricValue(1, 0, 0))),
+				new MetricMap("html.classnames", classes.build()),
+				new MetricMap("html.depth", ImmutableMap.of("0", new MetricValue(1), "1", new MetricValue(3))),
+				new PackedMetricList("indentation", new int[] { 0, 4 }, new int[] { 10, 20 }, new int[] { 0, 0 })
+			),
+			Arrays.asList(error, notice)
+		);
+	}
+	
+	@Test
+	public void reportsAreFolded() {
+		SiteSummary summary = new SiteSummary();
+		summary.add(page("card", "title"));
+		summary.add(page("card", "price"));
+		
+		assertEquals(2, summary.getDocumentCount());
+		assertEquals(2, summary.getMarkerCount(SeverityRating.Error));
+		assertEquals(2, summary.getMarkerCount(SeverityRating.Informational));
+		assertEquals(0, summary.getMarkerCount(SeverityRating.Warning));
+		assertEquals(ImmutableMap.of("html.rule", 2L), summary.getRuleCounts());
+		assertEquals(ImmutableMap.of("div", 6L, "p", 2L), summary.getTagCounts());
+		assertEquals(Collections.emptyMap(), summary.getPropertyCounts());
+		assertEquals(3, summary.estimateDistinctClassNames());
+		assertEquals(8, summary.getDepths().getCount());
+		assertEquals(1, summary.getDepths().getQuantile(0.5), 0.01);
+		assertEquals(20, summary.getLineLengths().getMax());
+	}
+	
+	@Test
+	public void shardsMergeAndSerialize() throws Exception {
+		SiteSummary first = new SiteSummary();
+		first.add(page("card"));
+		SiteSummary second = new SiteSummary();
+		second.add(page("title"));
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(second);
+		}
+		
+		SiteSummary copy;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			copy = (SiteSummary)in.readObject();
+		}
+		
+		first.merge(copy);
+		assertEquals(2, first.getDocumentCount());
+		assertEquals(ImmutableMap.of("div", 6L, "p", 2L), first.getTagCounts());
+		assertEquals(2, first.estimateDistinctClassNames());
+		assertEquals(4, first.getLineLengths().getCount());
+	}
+	
+	@Test
+	public void countsDoNotOverflow() {
+		SiteSummary summary = new SiteSummary();
+		Report page = new Report(
+			Arrays.asList(new MetricMap("html.tagcount", ImmutableMap.of("div", new MetricValue(Integer.MAX_VALUE, 0, 0)))),
+			Collections.emptyList()
+		);
+		summary.add(page);
+		summary.add(page);
+		
+		SiteSummary other = new SiteSummary();
+		other.add(page);
+		summary.merge(other);
+		
+		assertEquals(ImmutableMap.of("div", 3L * Integer.MAX_VALUE), summary.getTagCounts());
+	}
+}
@@ -0,0 +1,68 @@
+package logicanalyser.config;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.net.MediaType;
+
+import logicanalyser.LogicAnalyser;
+import logicanalyser.Marker;
+import logicanalyser.Report;
+import logicanalyser.SeverityRating;
+
+public class XMLConfigLoaderTest {
+	private static final String CONFIGURATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+		+ "<configuration xmlns=\"http://arp-web-analyser.net\">"
+		+ "<rule><id>house.img-alt</id><severity>warning</severity>"
+		+ "<description>Images need alt text</description>"
+		+ "<match tag=\"img\" without=\"alt\"/></rule>"
+		+ "<rule><id>other</id><severity>info</severity>"
+		+ "<description>Not a pattern</description></rule>"
+		+ "</configuration>";
+
+	private static final String DOCUMENT = "<html><head></head><body><img src=\"a\"><img src=\"b\" alt=\"b\"></body></html>";
+
+	private static RuleConfiguration load() throws Exception {
+		return new XMLConfigLoader(new ByteArrayInputStream(CONFIGURATION.getBytes(StandardCharsets.UTF_8))).load();
+	}
+
+	@Test
+	public void matchRulesAreLoadedAsPatterns() throws Exception {
+		RuleConfiguration configuration = load();
+
+		List<ElementPattern> patterns = configuration.getElementPatterns();
+		assertEquals(1, patterns.size());
+		assertEquals("img", patterns.get(0).getTag());
+		assertEquals("house.img-alt", patterns.get(0).getDetails().id);
+		assertEquals(SeverityRating.Informational, configuration.forRule("other").severity);
+	}
+
+	@Test
+	public void appliedPatternsAreChecked() throws Exception {
+		LogicAnalyser analyser = new LogicAnalyser();
+		analyser.applyRuleConfiguration(load());
+
+		Report report = analyser.analyseContent(MediaType.HTML_UTF_8, DOCUMENT);
+
+		List<Marker> markers = report.getWarningMarkers();
+		assertEquals(1, markers.size());
+		assertEquals("house.img-alt", markers.get(0).getRuleId().get());
+		assertEquals("Images need alt text", markers.get(0).getDescription());
+	}
+
+	@Test
+	public void patternsAreReplacedWithTheConfiguration() throws Exception {
+		LogicAnalyser analyser = new LogicAnalyser();
+		analyser.applyRuleConfiguration(load());
+		analyser.applyRuleConfiguration(load());
+		assertEquals(1, analyser.analyseContent(MediaType.HTML_UTF_8, DOCUMENT).getWarningMarkers().size());
+
+		analyser.applyRuleConfiguration(new RuleConfiguration());
+		assertEquals(0, analyser.analyseContent(MediaType.HTML_UTF_8, DOCUMENT).getWarningMarkers().size());
+	}
+}
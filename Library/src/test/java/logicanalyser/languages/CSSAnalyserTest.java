@@ -0,0 +1,117 @@
+package logicanalyser.languages;
+
+import com.google.common.net.MediaType;
+import com.helger.css.decl.CSSDeclaration;
+import com.helger.css.decl.CSSMediaRule;
+import com.helger.css.decl.CSSStyleRule;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import logicanalyser.LogicAnalyser;
+import logicanalyser.MetricMap;
+import logicanalyser.Report;
+import logicanalyser.Rule;
+import logicanalyser.Ruleset;
+import logicanalyser.SeverityRating;
+import logicanalyser.config.Details;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.css.SelectorCount;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+public class CSSAnalyserTest {
+	private static final String STYLESHEET =
+		"a { color: red; }\n" +
+		"@media screen { p { color: blue; margin: 0; } }\n" +
+		"@supports (display: grid) { div { display: grid; } }\n";
+	
+	private CSSAnalyser analyser;
+	private LogicAnalyser logicAnalyser;
+	
+	@Before
+	public void setup() {
+		analyser = new CSSAnalyser();
+		
+		logicAnalyser = mock(LogicAnalyser.class);
+		when(logicAnalyser.getRuleConfiguration())
+			.thenReturn(RuleConfiguration.DEFAULT);
+	}
+	
+	@Test
+	public void nestedRulesAreChecked() {
+		List<Object> seen = new ArrayList<>();
+		
+		Ruleset ruleset = new TestRuleset() {
+			@Override
+			public List<Rule<?>> getContainedRules() {
+				return Arrays.asList(
+					new RecordingRule<>(CSSStyleRule.class, seen),
+					new RecordingRule<>(CSSDeclaration.class, seen),
+					new RecordingRule<>(CSSMediaRule.class, seen)
+				);
+			}
+		};
+		
+		analyser.process(MediaType.CSS_UTF_8, STYLESHEET, Arrays.asList(ruleset), logicAnalyser);
+		
+		assertEquals(3, seen.stream().filter(t -> t instanceof CSSStyleRule).count());
+		assertEquals(4, seen.stream().filter(t -> t instanceof CSSDeclaration).count());
+		assertEquals(1, seen.stream().filter(t -> t instanceof CSSMediaRule).count());
+	}
+	
+	@Test
+	public void nestedDeclarationsAreCounted() {
+		Report report = analyser.process(MediaType.CSS_UTF_8, STYLESHEET, Arrays.asList(), logicAnalyser);
+		
+		MetricMap properties = (MetricMap)report.getMetric("css.propertycount");
+		assertEquals(2, properties.getValue("color").get());
+		assertEquals(1, properties.getValue("margin").get());
+		assertEquals(1, properties.getValue("display").get());
+	}
+	
+	@Test
+	public void selectorsAreOptIn() {
+		assertFalse(analyser.process(MediaType.CSS_UTF_8, STYLESHEET, Arrays.asList(), logicAnalyser).hasMetric("css.selectors"));
+		
+		analyser.registerMetric(new SelectorCount());
+		MetricMap selectors = (MetricMap)analyser.process(MediaType.CSS_UTF_8, STYLESHEET, Arrays.asList(), logicAnalyser).getMetric("css.selectors");
+		assertEquals(1, selectors.getValue("a").get());
+		assertEquals(1, selectors.getValue("p").get());
+		assertEquals(1, selectors.getValue("div").get());
+	}
+	
+	private static class RecordingRule<T> extends Rule<T> {
+		private final List<Object> seen;
+		
+		public RecordingRule(Class<T> type, List<Object> seen) {
+			super(type, type.getSimpleName());
+			this.seen = seen;
+		}
+		
+		@Override
+		public void check(Context context, T target) {
+			seen.add(target);
+		}
+		
+		@Override
+		public Details defaultDetails() {
+			return new Details("", SeverityRating.Informational);
+		}
+	}
+	
+	// Mockito cannot handle defendor methods, so this is needed
+	private static abstract class TestRuleset implements Ruleset {
+		@Override
+		public String getCategoryName() {
+			return "Test";
+		}
+		
+		@Override
+		public Class<? extends LanguageBase> getLanguage() {
+			return CSSAnalyser.class;
+		}
+	}
+}
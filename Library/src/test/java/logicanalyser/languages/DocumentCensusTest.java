@@ -0,0 +1,65 @@
+package logicanalyser.languages;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class DocumentCensusTest {
+	@Test
+	public void attributesMustBeWholeNames() {
+		DocumentCensus census = new DocumentCensus("<a data-style=x HREF=y>", ImmutableSet.of("href", "style", "data"));
+		
+		assertTrue(census.mayContainAttribute("href"));
+		assertFalse(census.mayContainAttribute("style"));
+		assertFalse(census.mayContainAttribute("data"));
+	}
+	
+	@Test
+	public void everyNameIsFoundInOneSearch() {
+		DocumentCensus census = new DocumentCensus(
+			"<p Style=\"a\">text</p><img alt=b><div onclick=x>",
+			ImmutableSet.of("style", "alt", "onclick", "title", "id")
+		);
+		
+		assertTrue(census.mayContainAttribute("style"));
+		assertTrue(census.mayContainAttribute("alt"));
+		assertTrue(census.mayContainAttribute("onclick"));
+		assertFalse(census.mayContainAttribute("title"));
+		assertFalse(census.mayContainAttribute("id"));
+	}
+	
+	@Test
+	public void namesNotSearchedForMayBePresent() {
+		DocumentCensus census = new DocumentCensus("<p>", ImmutableSet.of("style"));
+		
+		assertFalse(census.mayContainAttribute("style"));
+		assertTrue(census.mayContainAttribute("class"));
+	}
+	
+	@Test
+	public void namesEndWhereTheTokenizerEndsThem() {
+		DocumentCensus census = new DocumentCensus(
+			"<button @click=\"go\" [x]='1'#ref v-on:key.enter>",
+			ImmutableSet.of("@click", "[x]", "#ref", "v-on:key.enter", "click", "x", "ref")
+		);
+		
+		assertTrue(census.mayContainAttribute("@click"));
+		assertTrue(census.mayContainAttribute("[x]"));
+		assertTrue(census.mayContainAttribute("#ref"));
+		assertTrue(census.mayContainAttribute("v-on:key.enter"));
+		assertFalse(census.mayContainAttribute("click"));
+		assertFalse(census.mayContainAttribute("x"));
+		assertFalse(census.mayContainAttribute("ref"));
+	}
+	
+	@Test
+	public void namesThatCannotBeSearchedAreNotPruned() {
+		DocumentCensus census = new DocumentCensus("<p>", ImmutableSet.of("a\"b", "<c", ""));
+		
+		assertTrue(census.mayContainAttribute("a\"b"));
+		assertTrue(census.mayContainAttribute("<c"));
+		assertTrue(census.mayContainAttribute(""));
+	}
+}
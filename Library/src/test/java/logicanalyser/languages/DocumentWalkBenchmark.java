@@ -0,0 +1,211 @@
+package logicanalyser.languages;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.common.net.MediaType;
+
+import logicanalyser.Interval;
+import logicanalyser.Marker;
+import logicanalyser.Rule;
+import logicanalyser.SeverityRating;
+import logicanalyser.config.Details;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.html.TagCounter;
+import logicanalyser.languages.html.TagTypes;
+import logicanalyser.util.LineIndex;
+
+/**
+ * Compares walking a document once for all rules and metrics against
+ * selecting the elements for the rules and letting each metric walk the
+ * document separately. Both check the rules through the same
+ * {@link ElementRuleTable}.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=logicanalyser.languages.DocumentWalkBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DocumentWalkBenchmark {
+	@Param({"2000", "20000"})
+	public int cards;
+
+	private Document document;
+	private ElementRuleTable ruleTable;
+	private TagCounter tagCounter;
+	private TagTypes tagTypes;
+
+	@Setup
+	public void setup() {
+		document = Jsoup.parse(generatePage(cards));
+		List<Rule<Element>> rules = Arrays.asList(
+			new AttributeRule("img", "alt"),
+			new AttributeRule("script", "type"),
+			new AttributeRule("a", "href"),
+			new AttributeRule("input", "name")
+		);
+		ruleTable = new ElementRuleTable(rules);
+		tagCounter = new TagCounter();
+		tagTypes = new TagTypes();
+	}
+
+	@Benchmark
+	public void selectPerConsumer(Blackhole hole) {
+		CountingContext context = new CountingContext();
+		MetricContext metricContext = new EmptyMetricContext();
+
+		// Dispatched through the same table as the walk, so only the walking differs
+		for (Element element : document.select("*")) {
+			for (Rule<Element> rule : ruleTable.rulesFor(element.tagName())) {
+				context.check(rule, element);
+			}
+		}
+
+		hole.consume(tagCounter.produce(metricContext, document));
+		hole.consume(tagTypes.produce(metricContext, document));
+		hole.consume(context.count);
+	}
+
+	@Benchmark
+	public void singleWalk(Blackhole hole) {
+		CountingContext context = new CountingContext();
+		MetricContext metricContext = new EmptyMetricContext();
+
+		DocumentWalker walker = new DocumentWalker(context, metricContext, ruleTable, Collections.emptyList());
+		walker.subscribe(tagCounter);
+		walker.subscribe(tagTypes);
+		walker.walk(document);
+
+		hole.consume(walker.finish(tagCounter));
+		hole.consume(walker.finish(tagTypes));
+		hole.consume(context.count);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(
+			new OptionsBuilder()
+				.include(DocumentWalkBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+
+	static String generatePage(int cards) {
+		StringBuilder builder = new StringBuilder("<!DOCTYPE html>\n<html><head><title>Listing</title>");
+		builder.append("<script src=\"app.js\"></script></head>\n<body><div class=\"listing\">\n");
+
+		for (int i = 0; i < cards; ++i) {
+			builder
+				.append("<div class=\"card\" id=\"card-").append(i).append("\">\n")
+				.append("\t<a href=\"/product/").append(i).append("\"><img src=\"p").append(i).append(".png\"></a>\n")
+				.append("\t<h2><span>Product ").append(i).append("</span></h2>\n")
+				.append("\t<p>Some <b>bold</b> text<br><br>and more</p>\n")
+				.append("\t<form><input type=\"number\"><button>Add</button></form>\n")
+				.append("</div>\n");
+		}
+
+		return builder.append("</div></body></html>\n").toString();
+	}
+
+	private static class AttributeRule extends Rule<Element> {
+		private final String tag;
+		private final String attribute;
+
+		public AttributeRule(String tag, String attribute) {
+			super(Element.class, "bench." + tag, tag);
+			this.tag = tag;
+			this.attribute = attribute;
+		}
+
+		@Override
+		public void check(Context context, Element target) {
+			if (target.tagName().equals(tag) && !target.hasAttr(attribute)) {
+				context.addMarker(target);
+			}
+		}
+
+		@Override
+		public Details defaultDetails() {
+			return new Details("", SeverityRating.Warning);
+		}
+	}
+
+	private static class CountingContext extends BaseContext {
+		private int count;
+
+		public CountingContext() {
+			super(RuleConfiguration.DEFAULT);
+		}
+
+		@Override
+		public void addMarker(Object target) {
+			++count;
+		}
+
+		@Override
+		public Interval locate(Object target) {
+			return new Interval(0, 1);
+		}
+	}
+
+	private static class EmptyMetricContext implements MetricContext {
+		@Override
+		public MediaType getLanguageAt(int index) {
+			return MediaType.HTML_UTF_8;
+		}
+
+		@Override
+		public MediaType getLanguageAtLine(int line) {
+			return MediaType.HTML_UTF_8;
+		}
+
+		@Override
+		public String getContent() {
+			return "";
+		}
+
+		@Override
+		public String[] getLines() {
+			return new String[0];
+		}
+
+		@Override
+		public int getLineCount() {
+			return 0;
+		}
+
+		@Override
+		public LineIndex getLineIndex() {
+			return new LineIndex("");
+		}
+
+		@Override
+		public List<Marker> getMarkers() {
+			return Collections.emptyList();
+		}
+	}
+}
@@ -1,19 +1,29 @@
 package logicanalyser.languages;
 
 import com.google.common.net.MediaType;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import logicanalyser.Interval;
 import logicanalyser.LogicAnalyser;
 import logicanalyser.Marker;
+import logicanalyser.MetricBase;
+import logicanalyser.MetricMap;
+import logicanalyser.MetricProducer;
+import logicanalyser.MetricSingle;
 import logicanalyser.Report;
 import logicanalyser.Rule;
 import logicanalyser.Ruleset;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.html.ClassNames;
 
 import org.hamcrest.CoreMatchers;
 import org.jsoup.nodes.Document;
@@ -105,16 +115,28 @@ public class HTMLAnalyserTest {
 				.thenReturn(SeverityRating.Error);
 			when(stringMarker.getLocation())
 				.thenReturn(new Interval(0,1));
+			when(stringMarker.getTagName())
+				.thenReturn(Optional.empty());
+			when(stringMarker.getRuleId())
+				.thenReturn(Optional.empty());
 			Marker elementMarker = mock(Marker.class);
 			when(elementMarker.getSeverity())
 				.thenReturn(SeverityRating.Error);
 			when(elementMarker.getLocation())
 				.thenReturn(new Interval(0,1));
+			when(elementMarker.getTagName())
+				.thenReturn(Optional.empty());
+			when(elementMarker.getRuleId())
+				.thenReturn(Optional.empty());
 			Marker documentMarker = mock(Marker.class);
 			when(documentMarker.getSeverity())
 				.thenReturn(SeverityRating.Error);
 			when(documentMarker.getLocation())
 				.thenReturn(new Interval(0,1));
+			when(documentMarker.getTagName())
+				.thenReturn(Optional.empty());
+			when(documentMarker.getRuleId())
+				.thenReturn(Optional.empty());
 			
 			Rule<Element> elementRule = new Rule<Element>(Element.class, "1") {
 				@Override
@@ -172,6 +194,348 @@ public class HTMLAnalyserTest {
 			));
 		}
 		
+		@Test
+		public void tagTargetedRulesOnlySeeTheirTags() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			List<String> seenTags = new ArrayList<>();
+			Rule<Element> paragraphRule = new Rule<Element>(Element.class, "1", "p") {
+				@Override
+				public void check(Context context, Element target) {
+					seenTags.add(target.tagName());
+				}
+				
+				@Override
+				public Details defaultDetails() {
+					return new Details("", SeverityRating.Error);
+				}
+			};
+			
+			Ruleset ruleset = new TestRuleset() {
+				@Override
+				public List<Rule<?>> getContainedRules() {
+					return Arrays.asList(paragraphRule);
+				}
+			};
+			
+			String rawDocument = "<html><head></head><body><p>a</p><div><p>b</p></div></body></html>";
+			
+			analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(ruleset), logicAnalyser);
+			
+			assertEquals(Arrays.asList("p", "p"), seenTags);
+		}
+		
+		@Test
+		public void parallelRulesMatchSerialRules() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			Ruleset ruleset = new TestRuleset() {
+				@Override
+				public List<Rule<?>> getContainedRules() {
+					return Arrays.asList(
+						new MissingAttributeRule("img", "alt"),
+						new MissingAttributeRule("input", "name"),
+						new MissingAttributeRule(null, "id")
+					);
+				}
+			};
+			
+			String rawDocument = DocumentWalkBenchmark.generatePage(200);
+			
+			Report serial = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(ruleset), logicAnalyser);
+			
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			try {
+				analyser.enableParallelRules(0, pool, 4);
+				Report parallel = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(ruleset), logicAnalyser);
+				
+				assertFalse(serial.getAllMarkers().isEmpty());
+				assertEquals(serial.getAllMarkers(), parallel.getAllMarkers());
+				assertEquals(
+					((MetricSingle)serial.getMetric("warningcount")).getValue().get(),
+					((MetricSingle)parallel.getMetric("warningcount")).getValue().get()
+				);
+				
+				for (int i = 0; i < serial.getAllMarkers().size(); ++i) {
+					assertEquals(serial.getAllMarkers().get(i).getElementOrdinal(), parallel.getAllMarkers().get(i).getElementOrdinal());
+				}
+				
+				// Counted in chunks and merged
+				MetricMap serialTags = (MetricMap)serial.getMetric("html.tagcount");
+				MetricMap parallelTags = (MetricMap)parallel.getMetric("html.tagcount");
+				assertEquals(serialTags.getKeys(), parallelTags.getKeys());
+				for (String tag : serialTags.getKeys()) {
+					assertEquals(tag, serialTags.getValue(tag).get(0), parallelTags.getValue(tag).get(0));
+					assertEquals(tag, serialTags.getValue(tag).get(1), parallelTags.getValue(tag).get(1));
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		
+		@Test(timeout = 60000)
+		public void parallelRulesCanShareTheDocumentPool() throws Exception {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			Ruleset ruleset = rulesetOf(new MissingAttributeRule("img", "alt"));
+			String rawDocument = DocumentWalkBenchmark.generatePage(50);
+			Report serial = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(ruleset), logicAnalyser);
+			
+			// Every thread of the pool is busy with a document while the chunks are checked
+			ExecutorService pool = Executors.newFixedThreadPool(2);
+			try {
+				analyser.enableParallelRules(0, pool, 4);
+				
+				List<Future<Report>> reports = new ArrayList<>();
+				for (int i = 0; i < 4; ++i) {
+					reports.add(pool.submit(() -> analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(ruleset), logicAnalyser)));
+				}
+				
+				for (Future<Report> report : reports) {
+					assertEquals(serial.getAllMarkers(), report.get().getAllMarkers());
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		
+		@Test
+		public void rulesAreSkippedWithoutTheirAttributes() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			List<String> seenTags = new ArrayList<>();
+			Rule<Element> styleRule = new Rule<Element>(Element.class, "1") {
+				{
+					requireAttributes("style");
+				}
+				
+				@Override
+				public void check(Context context, Element target) {
+					seenTags.add(target.tagName());
+				}
+				
+				@Override
+				public Details defaultDetails() {
+					return new Details("", SeverityRating.Error);
+				}
+			};
+			
+			Ruleset ruleset = new TestRuleset() {
+				@Override
+				public List<Rule<?>> getContainedRules() {
+					return Arrays.asList(styleRule);
+				}
+			};
+			
+			analyser.process(MediaType.HTML_UTF_8, "<html><body><p>a</p></body></html>", Arrays.asList(ruleset), logicAnalyser);
+			assertTrue(seenTags.isEmpty());
+			
+			analyser.process(MediaType.HTML_UTF_8, "<html><body><P STYLE=\"a\">a</P></body></html>", Arrays.asList(ruleset), logicAnalyser);
+			assertTrue(seenTags.contains("p"));
+		}
+		
+		@Test
+		public void pureRulesReuseMarkersOfRepeatedSubtrees() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			ChildImageRule impure = new ChildImageRule(false);
+			ChildImageRule pure = new ChildImageRule(true);
+			
+			String rawDocument = "<html><body>"
+				+ "<div class=\"card\"><img src=\"a\"></div>"
+				+ "<div  class=\"card\"><img  src=\"a\"></div>"
+				+ "<div class=\"card\"><img src=\"a\"></div>"
+				+ "</body></html>";
+			
+			Report expected = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(rulesetOf(impure)), logicAnalyser);
+			Report actual = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(rulesetOf(pure)), logicAnalyser);
+			
+			assertEquals(3, impure.calls);
+			assertEquals(1, pure.calls);
+			assertEquals(3, actual.getAllMarkers().size());
+			assertEquals(expected.getAllMarkers(), actual.getAllMarkers());
+			
+			MetricMap cache = (MetricMap)actual.getMetric("html.subtreecache");
+			assertEquals(2, cache.getValue("hits").get());
+			assertEquals(1, cache.getValue("misses").get());
+		}
+		
+		@Test
+		public void markersKnowTheirElement() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			String rawDocument = "<html><head></head><body><p>a</p><img><div><img alt=\"\"><img></div></body></html>";
+			
+			Report visited = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(rulesetOf(new MissingAttributeRule("img", "alt"))), logicAnalyser);
+			List<Marker> markers = visited.getAllMarkers();
+			assertEquals(2, markers.size());
+			assertEquals("img", markers.get(0).getTagName().get());
+			// After the document, html, head, body and p
+			assertEquals(5, markers.get(0).getElementOrdinal());
+			assertEquals(8, markers.get(1).getElementOrdinal());
+			assertEquals("missing.alt", markers.get(0).getRuleId().get());
+			
+			// Placed on a child of the element being checked
+			Report child = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(rulesetOf(new ChildImageRule(false))), logicAnalyser);
+			assertEquals("img", child.getAllMarkers().get(0).getTagName().get());
+			assertEquals(-1, child.getAllMarkers().get(0).getElementOrdinal());
+			
+			MetricMap tags = (MetricMap)visited.getMetric("html.tagcount");
+			assertEquals(2, tags.getValue("img").get(1));
+		}
+		
+		@Test
+		public void elementMetricsSeeEveryMarker() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			List<Integer> seen = new ArrayList<>();
+			analyser.registerMetric(new MetricProducer<Element>(Element.class) {
+				@Override
+				public String getMetricName() {
+					return "seen";
+				}
+				
+				@Override
+				public MetricBase produce(MetricContext context, Element target) {
+					seen.add(context.getMarkers().size());
+					return null;
+				}
+			});
+			
+			String rawDocument = "<html><body><img><div><img></div></body></html>";
+			analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(rulesetOf(new MissingAttributeRule("img", "alt"))), logicAnalyser);
+			
+			// The document, html, head, body, img, div and img, even those before the second img
+			assertEquals(Collections.nCopies(7, 2), seen);
+		}
+		
+		@Test
+		public void classNamesAreOptIn() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			String rawDocument = "<html><body><div class=\"card wide\"><p class=\"card\">a</p></div></body></html>";
+			assertFalse(analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(), logicAnalyser).hasMetric("html.classnames"));
+			
+			analyser.registerMetric(new ClassNames());
+			MetricMap classes = (MetricMap)analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(), logicAnalyser).getMetric("html.classnames");
+			assertEquals(2, classes.getValue("card").get());
+			assertEquals(1, classes.getValue("wide").get());
+		}
+		
+		@Test
+		public void tagCountUsesTheElementOfTheMarker() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			String rawDocument = "<html><body><div><span>a</span></div></body></html>";
+			Report report = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(rulesetOf(new MissingAttributeRule("div", "title"))), logicAnalyser);
+			
+			// Counted on the div itself, not on the node found at its offset
+			MetricMap tags = (MetricMap)report.getMetric("html.tagcount");
+			assertEquals(1, tags.getValue("div").get(1));
+			assertEquals(0, tags.getValue("span").get(1));
+		}
+		
+		@Test
+		public void markersAreCountedByRule() {
+			LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+			when(logicAnalyser.getRuleConfiguration())
+				.thenReturn(RuleConfiguration.DEFAULT);
+			
+			Ruleset ruleset = new TestRuleset() {
+				@Override
+				public List<Rule<?>> getContainedRules() {
+					return Arrays.asList(
+						new MissingAttributeRule("img", "alt"),
+						new MissingAttributeRule("input", "name")
+					);
+				}
+			};
+			
+			String rawDocument = "<html><body><img><img alt=\"\"><img><input></body></html>";
+			Report report = analyser.process(MediaType.HTML_UTF_8, rawDocument, Arrays.asList(ruleset), logicAnalyser);
+			
+			assertEquals(3, ((MetricSingle)report.getMetric("warningcount")).getValue().get());
+			assertEquals(0, ((MetricSingle)report.getMetric("errorcount")).getValue().get());
+			
+			MetricMap rules = (MetricMap)report.getMetric("rulecount");
+			assertEquals(2, rules.getValue("missing.alt").get());
+			assertEquals(1, rules.getValue("missing.name").get());
+		}
+		
+		private static Ruleset rulesetOf(Rule<?> rule) {
+			return new TestRuleset() {
+				@Override
+				public List<Rule<?>> getContainedRules() {
+					return Arrays.asList(rule);
+				}
+			};
+		}
+		
+		private static class ChildImageRule extends Rule<Element> {
+			private int calls;
+			
+			public ChildImageRule(boolean pure) {
+				super(Element.class, "child.img", "div");
+				if (pure) {
+					declarePure();
+				}
+			}
+			
+			@Override
+			public void check(Context context, Element target) {
+				++calls;
+				for (Element child : target.children()) {
+					if (child.tagName().equals("img") && !child.hasAttr("alt")) {
+						context.addMarker(child);
+					}
+				}
+			}
+			
+			@Override
+			public Details defaultDetails() {
+				return new Details("Missing alt", SeverityRating.Warning);
+			}
+		}
+		
+		private static class MissingAttributeRule extends Rule<Element> {
+			private final String attribute;
+			
+			public MissingAttributeRule(String tag, String attribute) {
+				super(Element.class, "missing." + attribute, tag == null ? new String[0] : new String[] {tag});
+				this.attribute = attribute;
+			}
+			
+			@Override
+			public void check(Context context, Element target) {
+				if (!target.hasAttr(attribute)) {
+					context.addMarker(target);
+				}
+			}
+			
+			@Override
+			public Details defaultDetails() {
+				return new Details("Missing " + attribute, SeverityRating.Warning);
+			}
+		}
+		
 		// Mockito cannot handle defendor methods, so this is needed
 		private static abstract class TestRuleset implements Ruleset {
 			@Override
@@ -0,0 +1,131 @@
+package logicanalyser.languages;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import logicanalyser.Interval;
+import logicanalyser.Rule;
+import logicanalyser.SeverityRating;
+import logicanalyser.config.Details;
+import logicanalyser.config.RuleConfiguration;
+
+/**
+ * Compares walking the repeated-card page of {@link DocumentWalkBenchmark}
+ * with a pure rule reusing its markers through a {@link SubtreeMemo},
+ * including the hashing, against running the same rule on every element.
+ * The rule checks that every field of a form has a label.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=logicanalyser.languages.SubtreeMemoBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SubtreeMemoBenchmark {
+	@Param({"2000", "20000"})
+	public int cards;
+
+	private Document document;
+	private ElementRuleTable pureRules;
+	private ElementRuleTable plainRules;
+
+	@Setup
+	public void setup() {
+		document = Jsoup.parse(DocumentWalkBenchmark.generatePage(cards));
+		pureRules = new ElementRuleTable(Arrays.<Rule<Element>>asList(new LabelRule(true)));
+		plainRules = new ElementRuleTable(Arrays.<Rule<Element>>asList(new LabelRule(false)));
+	}
+
+	@Benchmark
+	public void memoWalk(Blackhole hole) {
+		RecordingContext context = new RecordingContext();
+
+		DocumentWalker walker = new DocumentWalker(context, null, pureRules, Collections.emptyList());
+		walker.useMemo(new SubtreeMemo(document, pureRules));
+		walker.walk(document);
+
+		hole.consume(context.getMarkers().size());
+	}
+
+	@Benchmark
+	public void plainWalk(Blackhole hole) {
+		RecordingContext context = new RecordingContext();
+
+		DocumentWalker walker = new DocumentWalker(context, null, plainRules, Collections.emptyList());
+		walker.walk(document);
+
+		hole.consume(context.getMarkers().size());
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(
+			new OptionsBuilder()
+				.include(SubtreeMemoBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+
+	private static class LabelRule extends Rule<Element> {
+		public LabelRule(boolean pure) {
+			super(Element.class, "bench.label", "form");
+			if (pure) {
+				declarePure();
+			}
+		}
+
+		@Override
+		public void check(Context context, Element target) {
+			List<Element> labels = target.select("label");
+			for (Element field : target.select("input, select, textarea")) {
+				boolean labelled = field.parents().is("label");
+				for (Element label : labels) {
+					labelled |= label.attr("for").equals(field.id());
+				}
+
+				if (!labelled) {
+					context.addMarker(field);
+				}
+			}
+		}
+
+		@Override
+		public Details defaultDetails() {
+			return new Details("", SeverityRating.Warning);
+		}
+	}
+
+	private static class RecordingContext extends BaseContext {
+		public RecordingContext() {
+			super(RuleConfiguration.DEFAULT);
+		}
+
+		@Override
+		public Interval locate(Object target) {
+			return new Interval(0, 1);
+		}
+	}
+}
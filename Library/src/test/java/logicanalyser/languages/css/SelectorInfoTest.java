@@ -0,0 +1,44 @@
+package logicanalyser.languages.css;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.helger.css.ECSSVersion;
+import com.helger.css.decl.CSSSelector;
+import com.helger.css.reader.CSSReader;
+
+public class SelectorInfoTest {
+	private static SelectorInfo infoOf(String selector) {
+		CSSSelector parsed = CSSReader.readFromString(selector + " { color: red; }", ECSSVersion.LATEST)
+			.getAllStyleRules().get(0)
+			.getAllSelectors().get(0);
+		
+		return new SelectorInfo(parsed);
+	}
+	
+	@Test
+	public void countsMembers() {
+		SelectorInfo info = infoOf("#main div.item > a");
+		
+		assertEquals(1, info.getIdCount());
+		assertEquals(1, info.getClassCount());
+		assertEquals(2, info.getElementCount());
+		assertEquals(2, info.getCombinatorCount());
+		assertEquals(4, info.getSimpleSelectorCount());
+		assertNotNull(info.getFirstId());
+	}
+	
+	@Test
+	public void computesSpecificity() {
+		assertArrayEquals(new int[] { 1, 1, 2 }, infoOf("#main div.item > a").getSpecificity());
+		assertArrayEquals(new int[] { 0, 2, 1 }, infoOf("a[href]:hover").getSpecificity());
+		assertArrayEquals(new int[] { 0, 0, 2 }, infoOf("p::first-line").getSpecificity());
+		assertArrayEquals(new int[] { 0, 0, 0 }, infoOf("*").getSpecificity());
+	}
+	
+	@Test
+	public void hasNoIdWithoutIdSelectors() {
+		assertNull(infoOf(".item").getFirstId());
+	}
+}
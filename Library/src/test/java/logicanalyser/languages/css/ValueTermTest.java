@@ -0,0 +1,35 @@
+package logicanalyser.languages.css;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ValueTermTest {
+	@Test
+	public void numbersAreSplitFromUnits() {
+		ValueTerm term = ValueTerm.parseSimple("-1.5em");
+		
+		assertEquals(ValueTerm.Kind.NUMBER, term.getKind());
+		assertEquals("-1.5", term.getNumberText());
+		assertEquals(-1.5, term.getNumber(), 0);
+		assertEquals("em", term.getUnit());
+		assertTrue(term.hasLetterUnit());
+	}
+	
+	@Test
+	public void percentagesAndPlainNumbersHaveNoLetterUnit() {
+		assertFalse(ValueTerm.parseSimple("50%").hasLetterUnit());
+		assertEquals("%", ValueTerm.parseSimple("50%").getUnit());
+		
+		assertFalse(ValueTerm.parseSimple("0").hasLetterUnit());
+		assertEquals("", ValueTerm.parseSimple("0").getUnit());
+	}
+	
+	@Test
+	public void otherTermsAreClassified() {
+		assertEquals(ValueTerm.Kind.KEYWORD, ValueTerm.parseSimple("sans-serif").getKind());
+		assertEquals(ValueTerm.Kind.STRING, ValueTerm.parseSimple("'Times New Roman'").getKind());
+		assertEquals(ValueTerm.Kind.OTHER, ValueTerm.parseSimple("#fff").getKind());
+		assertEquals(ValueTerm.Kind.OTHER, ValueTerm.parseSimple("1px2").getKind());
+		assertFalse(ValueTerm.parseSimple("bold").isNumber());
+	}
+}
@@ -0,0 +1,100 @@
+package logicanalyser.languages.general;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import com.google.common.base.Strings;
+import com.google.common.net.MediaType;
+
+import logicanalyser.LogicAnalyser;
+import logicanalyser.MetricSingle;
+import logicanalyser.Report;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.languages.CSSAnalyser;
+import logicanalyser.languages.HTMLAnalyser;
+import logicanalyser.languages.LanguageBase;
+import logicanalyser.languages.MetricContext;
+import logicanalyser.languages.general.LineCount.Lines;
+import logicanalyser.util.LineIndex;
+
+import static org.mockito.Mockito.*;
+
+public class LineCountTest {
+	@Test
+	public void piecesMatchWholeContent() {
+		LineCount lineCount = new LineCount();
+		String[] samples = {"", "\n", "a", "a\n", "a\nb", "a\n\nb\n\n", "\n\na", "ab\ncd\n\nef\n"};
+		
+		for (String sample : samples) {
+			int expected = new LineIndex(sample).getLineCount();
+			
+			for (int split = 0; split <= sample.length(); ++split) {
+				Lines first = lineCount.createState();
+				lineCount.accumulate(first, null, sample.substring(0, split));
+				Lines second = lineCount.createState();
+				lineCount.accumulate(second, null, sample.substring(split));
+				
+				assertEquals(sample, expected, lineCount.merge(first, second).getLineCount());
+			}
+		}
+	}
+	
+	@Test
+	public void mergeIsAssociative() {
+		LineCount lineCount = new LineCount();
+		String[] pieces = {"a\n", "\n", "b\n\n"};
+		
+		Lines left = lineCount.merge(lineCount.merge(linesOf(pieces[0]), linesOf(pieces[1])), linesOf(pieces[2]));
+		Lines right = lineCount.merge(linesOf(pieces[0]), lineCount.merge(linesOf(pieces[1]), linesOf(pieces[2])));
+		
+		assertEquals(3, left.getLineCount());
+		assertEquals(left.getLineCount(), right.getLineCount());
+	}
+	
+	@Test
+	public void analysedContentIsFedInPieces() {
+		String html = "<html><body>\n" + Strings.repeat("<p>" + Strings.repeat("x", 100) + "</p>\n", 200) + "\n\n</body></html>\n\n";
+		String css = Strings.repeat("a {\n\tcolor: red;\n}\n", 1000) + "\n";
+		
+		assertFedInPieces(new HTMLAnalyser(), MediaType.HTML_UTF_8, html);
+		assertFedInPieces(new CSSAnalyser(), MediaType.CSS_UTF_8, css);
+	}
+	
+	private static void assertFedInPieces(LanguageBase language, MediaType type, String content) {
+		CountingLineCount counting = new CountingLineCount();
+		language.registerMetric(counting);
+		
+		LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+		when(logicAnalyser.getRuleConfiguration()).thenReturn(RuleConfiguration.DEFAULT);
+		Report report = language.process(type, content, Collections.emptyList(), logicAnalyser);
+		
+		int expected = new LineIndex(content).getLineCount();
+		assertEquals(expected, ((MetricSingle)report.getMetric("linecount")).getValue().get());
+		assertEquals(expected, ((MetricSingle)report.getMetric(counting.getMetricName())).getValue().get());
+		assertEquals((content.length() + LanguageBase.CONTENT_PIECE_SIZE - 1) / LanguageBase.CONTENT_PIECE_SIZE, counting.pieces);
+	}
+	
+	private static Lines linesOf(String piece) {
+		LineCount lineCount = new LineCount();
+		Lines lines = lineCount.createState();
+		lineCount.accumulate(lines, null, piece);
+		return lines;
+	}
+	
+	private static class CountingLineCount extends LineCount {
+		private int pieces;
+		
+		@Override
+		public String getMetricName() {
+			return "linecount.counted";
+		}
+		
+		@Override
+		public void accumulate(Lines lines, MetricContext context, String piece) {
+			++pieces;
+			super.accumulate(lines, context, piece);
+		}
+	}
+}
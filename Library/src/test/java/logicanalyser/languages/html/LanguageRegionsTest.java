@@ -0,0 +1,57 @@
+package logicanalyser.languages.html;
+
+import java.util.Random;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+import com.google.common.net.MediaType;
+
+public class LanguageRegionsTest {
+	private static final String CONTENT = "<html><head><style>p { color: red; }</style>\n"
+		+ "<script type=\"text/typescript\">let a = 1;</script></head>\n"
+		+ "<body><p>text</p><script>var b;</script><script type=\";;\">c</script></body></html>";
+	
+	@Test
+	public void regionsMatchNodeLookups() {
+		NodeIndex index = new NodeIndex(Jsoup.parse(CONTENT, "", Parser.htmlParser()));
+		
+		LanguageRegions inOrder = new LanguageRegions(index);
+		for (int offset = 0; offset <= CONTENT.length(); ++offset) {
+			assertEquals("Offset " + offset, expected(index, offset), inOrder.getLanguageAt(offset));
+		}
+		
+		LanguageRegions random = new LanguageRegions(index);
+		Random generator = new Random(42);
+		for (int i = 0; i < 500; ++i) {
+			int offset = generator.nextInt(CONTENT.length() + 1);
+			assertEquals("Offset " + offset, expected(index, offset), random.getLanguageAt(offset));
+		}
+	}
+	
+	/**
+	 * Resolves the language by finding the node first
+	 */
+	private static MediaType expected(NodeIndex index, int offset) {
+		Node node = index.getNodeAt(offset);
+		if (node instanceof TextNode && node.parent() instanceof Element) {
+			Element parent = (Element)node.parent();
+			if (parent.tagName().equals("script")) {
+				try {
+					return parent.hasAttr("type") ? MediaType.parse(parent.attr("type")) : MediaType.JAVASCRIPT_UTF_8;
+				} catch (IllegalArgumentException e) {
+					return MediaType.JAVASCRIPT_UTF_8;
+				}
+			} else if (parent.tagName().equals("style")) {
+				return MediaType.CSS_UTF_8;
+			}
+		}
+		
+		return MediaType.HTML_UTF_8;
+	}
+}
@@ -0,0 +1,54 @@
+package logicanalyser.languages.html;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NodeIndexTest {
+	private static final String CONTENT = "<html><head></head><body><p>first</p>\n<div><span>second</span></div></body></html>";
+	
+	private Document document;
+	private NodeIndex index;
+	
+	@Before
+	public void setup() {
+		document = Jsoup.parse(CONTENT, "", Parser.htmlParser());
+		index = new NodeIndex(document);
+	}
+	
+	@Test
+	public void nodesAreInDocumentOrder() {
+		assertSame(document.child(0), index.getNode(0));
+		assertEquals(-1, index.getParent(0));
+		assertEquals(index.size(), index.getSubtreeEnd(0));
+		
+		for (int i = 1; i < index.size(); ++i) {
+			assertSame(index.getNode(i).parent(), index.getNode(index.getParent(i)));
+		}
+	}
+	
+	@Test
+	public void deepestNodeIsFound() {
+		Node first = index.getNodeAt(CONTENT.indexOf("first") + 2);
+		assertTrue(first instanceof TextNode);
+		assertEquals("first", ((TextNode)first).text());
+		
+		Node second = index.getNodeAt(CONTENT.indexOf("second"));
+		assertTrue(second instanceof TextNode);
+		assertEquals("span", ((Element)second.parent()).tagName());
+	}
+	
+	@Test
+	public void emptyDocumentHasNoNodes() {
+		NodeIndex empty = new NodeIndex(new Document(""));
+		
+		assertEquals(0, empty.size());
+		assertNull(empty.getNodeAt(0));
+	}
+}
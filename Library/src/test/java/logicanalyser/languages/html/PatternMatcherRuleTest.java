@@ -0,0 +1,132 @@
+package logicanalyser.languages.html;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.net.MediaType;
+
+import logicanalyser.LogicAnalyser;
+import logicanalyser.Marker;
+import logicanalyser.Report;
+import logicanalyser.SeverityRating;
+import logicanalyser.config.ElementPattern;
+import logicanalyser.config.RuleConfiguration;
+import logicanalyser.config.RuleDetails;
+import logicanalyser.languages.HTMLAnalyser;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+import static org.mockito.Mockito.*;
+
+public class PatternMatcherRuleTest {
+	private static final String DOCUMENT = "<html><head></head><body>"
+		+ "<img src=\"a.png\"><img src=\"b.png\" alt=\"b\">"
+		+ "<a href=\"/\" target=\"_blank\">x</a><a href=\"/\" target=\"_blank\" rel=\"noopener\">y</a>"
+		+ "<table><form></form></table><div><form></form></div>"
+		+ "</body></html>";
+	
+	@Test
+	public void patternsReportUnderTheirOwnIds() {
+		List<ElementPattern> patterns = Arrays.asList(
+			ElementPattern.builder(details("house.img-alt", SeverityRating.Error))
+				.tag("img").withoutAttribute("alt").build(),
+			ElementPattern.builder(details("house.link-rel", SeverityRating.Warning))
+				.tag("a").withAttribute("target").withoutAttribute("rel").build(),
+			ElementPattern.builder(details("house.form-in-table", SeverityRating.CriticalError))
+				.tag("form").insideParent("table").build()
+		);
+		
+		Report report = analyse(patterns);
+		
+		assertEquals(1, report.getWarningMarkers().size());
+		assertEquals(1, countDescribed(report, "house.img-alt"));
+		assertEquals(1, countDescribed(report, "house.link-rel"));
+		assertEquals(1, countDescribed(report, "house.form-in-table"));
+	}
+	
+	@Test
+	public void patternsOnTheSameTagAreAllChecked() {
+		List<ElementPattern> patterns = Arrays.asList(
+			ElementPattern.builder(details("house.img-alt", SeverityRating.Warning))
+				.tag("img").withoutAttribute("alt").build(),
+			ElementPattern.builder(details("house.img-any", SeverityRating.Warning))
+				.tag("img").build()
+		);
+		
+		Report report = analyse(patterns);
+		
+		assertEquals(1, countDescribed(report, "house.img-alt"));
+		assertEquals(2, countDescribed(report, "house.img-any"));
+	}
+	
+	@Test
+	public void everyAttributeCombinationIsDecided() {
+		List<ElementPattern> patterns = Arrays.asList(
+			ElementPattern.builder(details("house.img-alt", SeverityRating.Warning))
+				.tag("img").withoutAttribute("alt").build(),
+			ElementPattern.builder(details("house.img-sized", SeverityRating.Warning))
+				.tag("img").withAttribute("width").withAttribute("height").build(),
+			ElementPattern.builder(details("house.img-lazy", SeverityRating.Warning))
+				.tag("img").withAttribute("loading").withoutAttribute("src").build()
+		);
+		
+		// More distinct combinations than the decision table starts with
+		String[] attributes = {"alt", "width", "height", "loading", "src", "title"};
+		StringBuilder document = new StringBuilder("<html><body>");
+		for (int combination = 0; combination < 1 << attributes.length; ++combination) {
+			document.append("<img");
+			for (int i = 0; i < attributes.length; ++i) {
+				if ((combination & (1 << i)) != 0) {
+					document.append(' ').append(attributes[i]).append("=\"x\"");
+				}
+			}
+			document.append('>');
+		}
+		document.append("</body></html>");
+		
+		Report report = analyse(patterns, document.toString());
+		
+		assertEquals(32, countDescribed(report, "house.img-alt"));
+		assertEquals(16, countDescribed(report, "house.img-sized"));
+		assertEquals(16, countDescribed(report, "house.img-lazy"));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void attributeCannotBeRequiredAndForbidden() {
+		ElementPattern.builder(details("house.broken", SeverityRating.Warning))
+			.tag("img").withAttribute("alt").withoutAttribute("alt").build();
+	}
+	
+	private static RuleDetails details(String id, SeverityRating severity) {
+		// The id doubles as the description so markers can be told apart
+		return new RuleDetails(id, id, severity);
+	}
+	
+	private static int countDescribed(Report report, String description) {
+		int count = 0;
+		for (Marker marker : report.getAllMarkers()) {
+			if (marker.getDescription().equals(description)) {
+				++count;
+			}
+		}
+		
+		return count;
+	}
+	
+	private static Report analyse(List<ElementPattern> patterns) {
+		return analyse(patterns, DOCUMENT);
+	}
+	
+	private static Report analyse(List<ElementPattern> patterns, String document) {
+		LogicAnalyser logicAnalyser = mock(LogicAnalyser.class);
+		when(logicAnalyser.getRuleConfiguration())
+			.thenReturn(RuleConfiguration.DEFAULT);
+		
+		return new HTMLAnalyser().process(
+			MediaType.HTML_UTF_8, 
+			document, 
+			Arrays.asList(new DeclarativeRuleset("House", patterns)),
+			logicAnalyser
+		);
+	}
+}
@@ -0,0 +1,97 @@
+package logicanalyser.util;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import logicanalyser.MetricValue;
+
+/**
+ * Compares counting tag names with {@link ObjectIntCounter} against the
+ * boxing {@link CountingMap}, including creating the metric values.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=logicanalyser.util.CounterBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class CounterBenchmark {
+	private static final String[] TAGS = {
+		"html", "head", "body", "div", "span", "p", "a", "img", "ul", "li",
+		"h1", "h2", "h3", "form", "input", "button", "table", "tr", "td", "b"
+	};
+
+	@Param({"10000", "100000"})
+	public int elements;
+
+	/**
+	 * The number of distinct keys, such as tags or class names
+	 */
+	@Param({"20", "2000"})
+	public int distinct;
+
+	private String[] keys;
+
+	@Setup
+	public void setup() {
+		String[] pool = new String[distinct];
+		for (int i = 0; i < distinct; ++i) {
+			pool[i] = i < TAGS.length ? TAGS[i] : "item-" + i;
+		}
+
+		Random random = new Random(42);
+		keys = new String[elements];
+		for (int i = 0; i < elements; ++i) {
+			// Copies, as names from a parser are not the same instances
+			keys[i] = new String(pool[random.nextInt(distinct)]);
+		}
+	}
+
+	@Benchmark
+	public void countingMap(Blackhole hole) {
+		CountingMap<String> count = new CountingMap<>();
+		for (String key : keys) {
+			count.increment(key);
+		}
+
+		hole.consume(count.toMap(MetricValue::new));
+	}
+
+	@Benchmark
+	public void objectIntCounter(Blackhole hole) {
+		ObjectIntCounter<String> count = new ObjectIntCounter<>();
+		for (String key : keys) {
+			count.increment(key);
+		}
+
+		hole.consume(count.toMap(MetricValue::new));
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(
+			new OptionsBuilder()
+				.include(CounterBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+}
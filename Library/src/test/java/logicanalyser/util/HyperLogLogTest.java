@@ -0,0 +1,49 @@
+package logicanalyser.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+	@Test
+	public void smallCountsAreExact() {
+		HyperLogLog sketch = new HyperLogLog(14);
+		for (int round = 0; round < 3; ++round) {
+			for (int i = 0; i < 20; ++i) {
+				sketch.add("value-" + i);
+			}
+		}
+		
+		assertEquals(20, sketch.estimate());
+	}
+	
+	@Test
+	public void largeCountsAreClose() {
+		HyperLogLog sketch = new HyperLogLog(14);
+		for (int i = 0; i < 100000; ++i) {
+			sketch.add("value-" + i);
+		}
+		
+		assertEquals(100000, sketch.estimate(), 100000 * 0.03);
+	}
+	
+	@Test
+	public void mergeEqualsAddingToOne() {
+		HyperLogLog all = new HyperLogLog(12);
+		HyperLogLog first = new HyperLogLog(12);
+		HyperLogLog second = new HyperLogLog(12);
+		for (int i = 0; i < 5000; ++i) {
+			all.add("value-" + i);
+			(i < 3000 ? first : second).add("value-" + i);
+		}
+		// Values seen by both shards are only counted once
+		second.add("value-0");
+		
+		first.merge(second);
+		assertEquals(all.estimate(), first.estimate());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void differentPrecisionsCannotMerge() {
+		new HyperLogLog(12).merge(new HyperLogLog(14));
+	}
+}
@@ -0,0 +1,51 @@
+package logicanalyser.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class LineIndexTest {
+	@Test
+	public void lineCountMatchesSplit() {
+		String[] samples = {"", "\n", "a", "a\n", "a\nb", "a\n\nb\n\n", "\n\na", " \n"};
+		
+		for (String sample : samples) {
+			LineIndex index = new LineIndex(sample);
+			assertEquals(sample, sample.split("\n").length, index.getLineCount());
+			assertArrayEquals(sample, sample.split("\n"), index.toLines());
+		}
+	}
+	
+	@Test
+	public void linesAreLocated() {
+		LineIndex index = new LineIndex("ab\ncde\n\nf");
+		
+		assertEquals(0, index.getLineStart(0));
+		assertEquals(3, index.getLineStart(1));
+		assertEquals(7, index.getLineStart(2));
+		assertEquals(8, index.getLineStart(3));
+		
+		assertEquals(6, index.getLineEnd(1));
+		assertEquals(0, index.getLineLength(2));
+		assertEquals("cde", index.getLine(1));
+	}
+	
+	@Test
+	public void offsetsConvertToLinesAndColumns() {
+		LineIndex index = new LineIndex("ab\ncde\n\nf");
+		
+		assertEquals(0, index.getLineOf(0));
+		assertEquals(0, index.getLineOf(2));
+		assertEquals(1, index.getLineOf(3));
+		assertEquals(1, index.getLineOf(6));
+		assertEquals(2, index.getLineOf(7));
+		assertEquals(3, index.getLineOf(9));
+		
+		assertEquals(2, index.getColumnOf(5));
+		assertEquals(5, index.toOffset(1, 2));
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void offsetMustBeInContent() {
+		new LineIndex("abc").getLineOf(4);
+	}
+}
@@ -0,0 +1,97 @@
+package logicanalyser.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ObjectIntCounterTest {
+	@Test
+	public void countsKeys() {
+		ObjectIntCounter<String> counter = new ObjectIntCounter<>();
+		counter.increment("div");
+		counter.increment("p");
+		counter.increment("div");
+		counter.add("span", 5);
+		counter.set("p", 7);
+		
+		assertEquals(3, counter.size());
+		assertEquals(2, counter.get("div"));
+		assertEquals(7, counter.get("p"));
+		assertEquals(5, counter.get("span"));
+		assertEquals(0, counter.get("a"));
+		assertFalse(counter.containsKey("a"));
+	}
+	
+	@Test
+	public void growsPastItsCapacity() {
+		ObjectIntCounter<Integer> counter = new ObjectIntCounter<>(2);
+		for (int round = 0; round < 3; ++round) {
+			for (int i = 0; i < 1000; ++i) {
+				counter.add(i, i);
+			}
+		}
+		
+		assertEquals(1000, counter.size());
+		for (int i = 0; i < 1000; ++i) {
+			assertEquals(i * 3, counter.get(i));
+		}
+	}
+	
+	@Test
+	public void freezesInInsertionOrder() {
+		ObjectIntCounter<String> counter = new ObjectIntCounter<>();
+		counter.increment("c");
+		counter.increment("a");
+		counter.increment("b");
+		counter.increment("a");
+		
+		Map<String, String> frozen = counter.toMap(count -> "x" + count);
+		assertEquals(Arrays.asList("c", "a", "b"), Lists.newArrayList(frozen.keySet()));
+		assertEquals("x2", frozen.get("a"));
+		
+		counter.increment("d");
+		assertEquals(3, frozen.size());
+		
+		List<String> visited = Lists.newArrayList();
+		counter.forEach((key, count) -> visited.add(key + count));
+		assertEquals(Arrays.asList("c1", "a2", "b1", "d1"), visited);
+	}
+	
+	@Test
+	public void addsOtherCounters() {
+		ObjectIntCounter<String> first = new ObjectIntCounter<>();
+		first.add("a", 2);
+		ObjectIntCounter<String> second = new ObjectIntCounter<>();
+		second.add("a", 3);
+		second.add("b", 1);
+		
+		first.addAll(second);
+		
+		assertEquals(5, first.get("a"));
+		assertEquals(1, first.get("b"));
+	}
+	
+	@Test
+	public void clearKeepsWorking() {
+		ObjectIntCounter<String> counter = new ObjectIntCounter<>();
+		counter.increment("a");
+		counter.clear();
+		
+		assertTrue(counter.isEmpty());
+		assertEquals(0, counter.get("a"));
+		
+		counter.increment("a");
+		assertEquals(1, counter.get("a"));
+	}
+	
+	@Test(expected = NullPointerException.class)
+	public void rejectsNullKeys() {
+		new ObjectIntCounter<String>().increment(null);
+	}
+}
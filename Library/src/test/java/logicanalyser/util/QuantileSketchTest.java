@@ -0,0 +1,52 @@
+package logicanalyser.util;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class QuantileSketchTest {
+	@Test
+	public void quantilesAreWithinAccuracy() {
+		QuantileSketch sketch = new QuantileSketch(0.01);
+		for (int i = 0; i <= 1000; ++i) {
+			sketch.add(i);
+		}
+		
+		assertEquals(1001, sketch.getCount());
+		assertEquals(0, sketch.getQuantile(0), 0);
+		assertEquals(1000, sketch.getQuantile(1), 0);
+		assertEquals(500, sketch.getQuantile(0.5), 500 * 0.01);
+		assertEquals(900, sketch.getQuantile(0.9), 900 * 0.01);
+	}
+	
+	@Test
+	public void zerosAreCounted() {
+		QuantileSketch sketch = new QuantileSketch(0.01);
+		sketch.add(0, 9);
+		sketch.add(40);
+		
+		assertEquals(0, sketch.getQuantile(0.5), 0);
+		assertEquals(40, sketch.getMax());
+	}
+	
+	@Test
+	public void mergeEqualsAddingToOne() {
+		QuantileSketch all = new QuantileSketch(0.02);
+		QuantileSketch first = new QuantileSketch(0.02);
+		QuantileSketch second = new QuantileSketch(0.02);
+		for (int i = 0; i < 2000; ++i) {
+			all.add(i * 7 % 1000);
+			(i % 3 == 0 ? first : second).add(i * 7 % 1000);
+		}
+		
+		first.merge(second);
+		assertEquals(all.getCount(), first.getCount());
+		for (double quantile = 0; quantile <= 1; quantile += 0.125) {
+			assertEquals(all.getQuantile(quantile), first.getQuantile(quantile), 0);
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeValuesAreRejected() {
+		new QuantileSketch(0.01).add(-1);
+	}
+}
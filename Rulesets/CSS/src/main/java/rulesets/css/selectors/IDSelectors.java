@@ -3,8 +3,8 @@ package rulesets.css.selectors;
 import com.helger.css.decl.CSSSelector;
 import com.helger.css.decl.CSSSelectorSimpleMember;
 import com.helger.css.decl.CSSStyleRule;
-import com.helger.css.decl.ICSSSelectorMember;
 import logicanalyser.languages.Context;
+import logicanalyser.languages.css.SelectorInfo;
 import logicanalyser.config.Details;
 import logicanalyser.SeverityRating;
 import logicanalyser.Rule;
@@ -20,21 +20,10 @@ class IDSelectors extends Rule<CSSStyleRule> {
 
 	@Override
 	public void check(Context context, CSSStyleRule rule) {
-		boolean found = false;
 		for (CSSSelector selector : rule.getAllSelectors()) {
-			for (ICSSSelectorMember member : selector.getAllMembers()) {
-				if (member instanceof CSSSelectorSimpleMember) {
-					CSSSelectorSimpleMember simpleMember = (CSSSelectorSimpleMember)member;
-
-					if (simpleMember.isHash()) {
-						context.addMarker(simpleMember);
-						found = true;
-						break;
-					}
-				}
-			}
-			
-			if (found) {
+			CSSSelectorSimpleMember id = SelectorInfo.of(context, selector).getFirstId();
+			if (id != null) {
+				context.addMarker(id);
 				break;
 			}
 		}
@@ -1,14 +1,13 @@
 package rulesets.css.selectors;
 
 import com.helger.css.decl.CSSSelector;
-import com.helger.css.decl.CSSSelectorSimpleMember;
 import com.helger.css.decl.CSSStyleRule;
-import com.helger.css.decl.ICSSSelectorMember;
 
 import logicanalyser.Rule;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.languages.Context;
+import logicanalyser.languages.css.SelectorInfo;
 
 /**
  * Looks for overspecified selectors and selectors that appear to follow the DOM
@@ -27,29 +26,13 @@ class OverspecificSelectors extends Rule<CSSStyleRule> {
 	@Override
 	public void check(Context context, CSSStyleRule rule) {
 		for (CSSSelector selector : rule.getAllSelectors()) {
+			SelectorInfo info = SelectorInfo.of(context, selector);
 			
-			int score = 0;
-			boolean isViolation = false;
+			int score = info.getIdCount() * ID_SCORE
+				+ info.getClassCount() * CLASS_SCORE
+				+ info.getElementCount() * ELEMENT_SCORE;
 			
-			for (ICSSSelectorMember member : selector.getAllMembers()) {
-				if (member instanceof CSSSelectorSimpleMember) {
-					CSSSelectorSimpleMember simpleMember = (CSSSelectorSimpleMember)member;
-					if (simpleMember.isHash()) {
-						score += ID_SCORE;
-					} else if (simpleMember.isClass()) {
-						score += CLASS_SCORE;
-					} else if (simpleMember.isElementName()) {
-						score += ELEMENT_SCORE;
-					}
-					
-					if (score >= SCORE_LIMIT) {
-						isViolation = true;
-						break;
-					}
-				}
-			}
-			
-			if (isViolation) {
+			if (score >= SCORE_LIMIT) {
 				context.addMarker(selector);
 			}
 		}
@@ -1,5 +1,12 @@
 package rulesets.css.values;
 
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
 import com.helger.css.decl.CSSDeclaration;
 import com.helger.css.decl.CSSStyleRule;
 import com.helger.css.decl.CascadingStyleSheet;
@@ -12,6 +19,7 @@ import logicanalyser.languages.Context;
 /**
  * Checks for duplicate CSS rules. Duplicate CSS rules can be combined into
  * a single rule with multiple selectors.
+ * Each set of duplicates is marked once, on the first rule of the set.
  */
 class DuplicateRules extends Rule<CascadingStyleSheet> {
 	public DuplicateRules() {
@@ -20,32 +28,19 @@ class DuplicateRules extends Rule<CascadingStyleSheet> {
 	
 	@Override
 	public void check(Context context, CascadingStyleSheet target) {
-		for (CSSStyleRule primary : target.getAllStyleRules()) {
-			for (CSSStyleRule secondary : target.getAllStyleRules()) {
-				if (primary == secondary) {
-					continue;
-				}
-				
-				if (areContentsEqual(primary, secondary)) {
-					context.addMarker(primary);
-				}
-			}
-		}
-	}
-	
-	private boolean areContentsEqual(CSSStyleRule rule1, CSSStyleRule rule2) {
-		if (rule1.getDeclarationCount() != rule2.getDeclarationCount()) {
-			return false;
+		// Rules with the same declarations in any order share a key
+		Map<Multiset<CSSDeclaration>, List<CSSStyleRule>> groups = Maps.newLinkedHashMap();
+		
+		for (CSSStyleRule rule : target.getAllStyleRules()) {
+			Multiset<CSSDeclaration> key = ImmutableMultiset.copyOf(rule.getAllDeclarations());
+			groups.computeIfAbsent(key, k -> Lists.newArrayList()).add(rule);
 		}
 		
-		// Equals ignoring order
-		for (CSSDeclaration declaration : rule1.getAllDeclarations()) {
-			if (!rule2.getAllDeclarations().contains(declaration)) {
-				return false;
+		for (List<CSSStyleRule> group : groups.values()) {
+			if (group.size() > 1) {
+				context.addMarker(group.get(0));
 			}
 		}
-		
-		return true;
 	}
 	
 	@Override
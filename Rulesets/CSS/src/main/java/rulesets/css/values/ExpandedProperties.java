@@ -1,8 +1,16 @@
 package rulesets.css.values;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import com.helger.css.decl.CSSDeclaration;
 import com.helger.css.decl.CSSStyleRule;
 import com.helger.css.decl.shorthand.CSSPropertyWithDefaultValue;
@@ -22,8 +30,36 @@ import logicanalyser.languages.Context;
  * padding: 0;
  */
 class ExpandedProperties extends Rule<CSSStyleRule> {
-	private static final Set<ECSSProperty> SHORTHAND_PROPERTIES = 
-		CSSShortHandRegistry.getAllShortHandProperties();
+	/**
+	 * The sub properties of each shorthand property
+	 */
+	private static final Map<ECSSProperty, List<CSSPropertyWithDefaultValue>> SUB_PROPERTIES;
+	
+	/**
+	 * The shorthand properties that each sub property name is part of
+	 */
+	private static final ListMultimap<String, ECSSProperty> SHORTHANDS_BY_SUB_PROPERTY;
+	
+	static {
+		ImmutableMap.Builder<ECSSProperty, List<CSSPropertyWithDefaultValue>> subProperties = ImmutableMap.builder();
+		ImmutableListMultimap.Builder<String, ECSSProperty> shorthands = ImmutableListMultimap.builder();
+		
+		for (ECSSProperty shorthand : CSSShortHandRegistry.getAllShortHandProperties()) {
+			List<CSSPropertyWithDefaultValue> subs = ImmutableList.copyOf(
+				CSSShortHandRegistry
+					.getShortHandDescriptor(shorthand)
+					.getAllSubProperties()
+			);
+			
+			subProperties.put(shorthand, subs);
+			for (CSSPropertyWithDefaultValue sub : subs) {
+				shorthands.put(sub.getProperty().getProp().getName(), shorthand);
+			}
+		}
+		
+		SUB_PROPERTIES = subProperties.build();
+		SHORTHANDS_BY_SUB_PROPERTY = shorthands.build();
+	}
 	
 	public ExpandedProperties() {
 		super(CSSStyleRule.class, "values.expanded-properties");
@@ -31,26 +67,34 @@ class ExpandedProperties extends Rule<CSSStyleRule> {
 	
 	@Override
 	public void check(Context context, CSSStyleRule rule) {
-		for (ECSSProperty shorthand : SHORTHAND_PROPERTIES) {
-			if (hasProperty(rule, shorthand)) {
+		// The first declaration of each property, as found by getDeclarationOfPropertyName
+		Map<String, CSSDeclaration> declarations = Maps.newHashMap();
+		// Only the shorthands of properties in this rule can be fully expanded
+		Set<ECSSProperty> candidates = EnumSet.noneOf(ECSSProperty.class);
+		
+		for (CSSDeclaration declaration : rule.getAllDeclarations()) {
+			// Property names are not case sensitive
+			String name = declaration.getProperty().toLowerCase(Locale.ROOT);
+			
+			declarations.putIfAbsent(name, declaration);
+			candidates.addAll(SHORTHANDS_BY_SUB_PROPERTY.get(name));
+		}
+		
+		for (ECSSProperty shorthand : candidates) {
+			if (declarations.containsKey(shorthand.getName())) {
 				continue;
 			}
 			
-			List<CSSPropertyWithDefaultValue> subProperties;
-			subProperties = CSSShortHandRegistry
-				.getShortHandDescriptor(shorthand)
-				.getAllSubProperties();
-
 			CSSDeclaration first = null;
 			boolean hasAll = true;
-			for (CSSPropertyWithDefaultValue subProperty : subProperties) {
-				if (!hasProperty(rule, subProperty.getProperty().getProp())) {
+			for (CSSPropertyWithDefaultValue subProperty : SUB_PROPERTIES.get(shorthand)) {
+				if (!declarations.containsKey(subProperty.getProperty().getProp().getName())) {
 					hasAll = false;
 					break;
 				}
 				
 				if (first == null) {
-					first = rule.getDeclarationOfPropertyName(subProperty.getProperty().getPropertyName());
+					first = declarations.get(subProperty.getProperty().getPropertyName().toLowerCase(Locale.ROOT));
 				}
 			}
 			
@@ -60,10 +104,6 @@ class ExpandedProperties extends Rule<CSSStyleRule> {
 		}
 	}
 	
-	private boolean hasProperty(CSSStyleRule rule, ECSSProperty property) {
-		return rule.getDeclarationOfPropertyName(property.getName()) != null;
-	}
-	
 	@Override
 	public Details defaultDetails() {
 		return new Details(
@@ -1,11 +1,11 @@
 package rulesets.css.values;
 
+import java.util.List;
 import java.util.Set;
 
 import com.google.common.collect.ImmutableSet;
 import com.helger.commons.collection.ext.ICommonsList;
 import com.helger.css.decl.CSSDeclaration;
-import com.helger.css.decl.CSSExpressionMemberTermSimple;
 import com.helger.css.decl.CSSStyleRule;
 import com.helger.css.decl.shorthand.CSSShortHandRegistry;
 import com.helger.css.property.ECSSProperty;
@@ -14,6 +14,8 @@ import logicanalyser.Rule;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.languages.Context;
+import logicanalyser.languages.css.DeclarationValue;
+import logicanalyser.languages.css.ValueTerm;
 
 /**
  * Checks if a font-family or font declaration has fallback fonts
@@ -45,7 +47,7 @@ class FontStyle extends Rule<CSSStyleRule> {
 				
 				hasFont = true;
 				first = declaration;
-				if (hasFallbacks(declaration)) {
+				if (hasFallbacks(DeclarationValue.of(context, declaration))) {
 					return;
 				}
 			} else if (declaration.getProperty().equals("font")) {
@@ -75,16 +77,13 @@ class FontStyle extends Rule<CSSStyleRule> {
 		}
 	}
 	
-	private boolean hasFallbacks(CSSDeclaration declaration) {
-		ICommonsList<CSSExpressionMemberTermSimple> members;
-		
-		members = declaration.getExpression()
-			.getAllSimpleMembers();
+	private boolean hasFallbacks(DeclarationValue value) {
+		List<ValueTerm> members = value.getSimpleTerms();
 		
 		//check to see if there is one member 
 		if (members.size() == 1) {
-			CSSExpressionMemberTermSimple member = members.get(0);
-			if (!GENERIC_FONTS.contains(member.getValue())) {
+			ValueTerm member = members.get(0);
+			if (!GENERIC_FONTS.contains(member.getText())) {
 				return false;
 			}
 		} else if (members.isEmpty()) {
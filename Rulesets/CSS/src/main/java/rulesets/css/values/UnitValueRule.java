@@ -1,12 +1,12 @@
 package rulesets.css.values;
-import com.helger.commons.collection.ext.ICommonsList;
 import com.helger.css.decl.CSSDeclaration;
-import com.helger.css.decl.CSSExpressionMemberTermSimple;
 import com.helger.css.decl.CSSStyleRule;
 import logicanalyser.Rule;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.languages.Context;
+import logicanalyser.languages.css.DeclarationValue;
+import logicanalyser.languages.css.ValueTerm;
 /**
  * Checks for numerical property values and in specific for values starting with 0
  * And checks if it followed by px or em  
@@ -20,17 +20,11 @@ public class UnitValueRule extends Rule<CSSStyleRule> {
 
 	@Override
 	public void check(Context context, CSSStyleRule rule) {
-
-		String regEx = "0[a-zA-Z]+";
 		for (CSSDeclaration decleration : rule.getAllDeclarations()) {
-			ICommonsList<CSSExpressionMemberTermSimple> memberList ;
-			memberList= decleration.getExpression()
-					.getAllSimpleMembers();
-			for (CSSExpressionMemberTermSimple memberValue : memberList) {
-				if (memberValue instanceof CSSExpressionMemberTermSimple) {
-					if (memberValue.getValue().matches(regEx)) {
-						context.addMarker(decleration);
-					}
+			for (ValueTerm memberValue : DeclarationValue.of(context, decleration).getSimpleTerms()) {
+				// A zero followed by a unit, such as 0px
+				if (memberValue.hasLetterUnit() && memberValue.getNumberText().equals("0")) {
+					context.addMarker(decleration);
 				}
 			}
 		}
@@ -0,0 +1,62 @@
+package rulesets.css.values;
+
+import org.junit.Test;
+
+import com.helger.css.ECSSVersion;
+import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.reader.CSSReader;
+
+import static org.mockito.Mockito.*;
+
+import logicanalyser.languages.Context;
+
+public class DuplicateRulesTest {
+	@Test
+	public void declarationOrderIsIgnored() {
+		CascadingStyleSheet stylesheet = parse("a { color: red; margin: 0; } b { margin: 0; color: red; }");
+		
+		Context context = mock(Context.class);
+		new DuplicateRules().check(context, stylesheet);
+		
+		verify(context).addMarker(stylesheet.getStyleRuleAtIndex(0));
+		verifyNoMoreInteractions(context);
+	}
+	
+	@Test
+	public void eachGroupIsMarkedOnceOnItsFirstRule() {
+		CascadingStyleSheet stylesheet = parse(
+			"a { color: red; } b { margin: 0; } p { color: red; } i { margin: 0; } div { color: red; }"
+		);
+		
+		Context context = mock(Context.class);
+		new DuplicateRules().check(context, stylesheet);
+		
+		verify(context, times(1)).addMarker(stylesheet.getStyleRuleAtIndex(0));
+		verify(context, times(1)).addMarker(stylesheet.getStyleRuleAtIndex(1));
+		verifyNoMoreInteractions(context);
+	}
+	
+	@Test
+	public void repeatedDeclarationsMustMatch() {
+		CascadingStyleSheet stylesheet = parse("a { color: red; color: red; } b { color: red; }");
+		
+		Context context = mock(Context.class);
+		new DuplicateRules().check(context, stylesheet);
+		
+		verifyZeroInteractions(context);
+	}
+	
+	@Test
+	public void acceptsDifferentRules() {
+		CascadingStyleSheet stylesheet = parse("a { color: red; } b { color: blue; } p { color: red; margin: 0; }");
+		
+		Context context = mock(Context.class);
+		new DuplicateRules().check(context, stylesheet);
+		
+		verifyZeroInteractions(context);
+	}
+	
+	private static CascadingStyleSheet parse(String css) {
+		return CSSReader.readFromString(css, ECSSVersion.LATEST);
+	}
+}
@@ -0,0 +1,116 @@
+package rulesets.css.values;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.helger.css.ECSSVersion;
+import com.helger.css.decl.CSSDeclaration;
+import com.helger.css.decl.CSSStyleRule;
+import com.helger.css.decl.CascadingStyleSheet;
+import com.helger.css.decl.shorthand.CSSPropertyWithDefaultValue;
+import com.helger.css.decl.shorthand.CSSShortHandRegistry;
+import com.helger.css.property.ECSSProperty;
+import com.helger.css.reader.CSSReader;
+
+import static org.mockito.Mockito.*;
+
+import logicanalyser.languages.Context;
+
+public class ExpandedPropertiesTest {
+	@Test
+	public void rejectsFullyExpandedShorthand() {
+		CSSStyleRule rule = parse("a { padding-top: 0; padding-right: 0; padding-bottom: 0; padding-left: 0; }");
+		
+		List<Object> markers = check(rule);
+		
+		assertEquals(1, markers.size());
+		assertSame(rule.getDeclarationOfPropertyName("padding-top"), markers.get(0));
+	}
+	
+	@Test
+	public void acceptsPartlyExpandedShorthand() {
+		CSSStyleRule rule = parse("a { padding-top: 0; padding-left: 0; margin-top: 0; }");
+		
+		assertTrue(check(rule).isEmpty());
+	}
+	
+	@Test
+	public void acceptsRuleWithTheShorthand() {
+		CSSStyleRule rule = parse("a { padding: 0; padding-top: 0; padding-right: 0; padding-bottom: 0; padding-left: 0; }");
+		
+		assertTrue(check(rule).isEmpty());
+	}
+	
+	@Test
+	public void matchesScanOfEveryShorthand() {
+		String[] rules = {
+			"a { padding-top: 0; padding-right: 0; padding-bottom: 0; padding-left: 0; }",
+			"a { padding-top: 0; padding-left: 0; }",
+			"a { padding: 0; padding-top: 0; padding-right: 0; padding-bottom: 0; padding-left: 0; }",
+			"a { MARGIN-TOP: 0; margin-right: 0; Margin-Bottom: 0; margin-left: 0; }",
+			"a { border-width: 1px; border-style: solid; border-color: red; margin-top: 1px; }",
+			"a { border-top-width: 1px; border-top-style: solid; border-top-color: red; border-top: 0; }",
+			"a { font-style: italic; font-variant: normal; font-weight: bold; font-size: 1em; line-height: 1; font-family: serif; }",
+			"a { list-style-type: none; list-style-position: inside; list-style-image: none; color: red; }",
+			"a { outline-color: red; outline-style: solid; outline-width: 1px; outline-width: 2px; }",
+			"a { color: red; }"
+		};
+		
+		for (String css : rules) {
+			CSSStyleRule rule = parse(css);
+			assertEquals(css, HashMultiset.create(scanEveryShorthand(rule)), HashMultiset.create(check(rule)));
+		}
+	}
+	
+	private static List<Object> check(CSSStyleRule rule) {
+		Context context = mock(Context.class);
+		new ExpandedProperties().check(context, rule);
+		
+		ArgumentCaptor<Object> markers = ArgumentCaptor.forClass(Object.class);
+		verify(context, atLeast(0)).addMarker(markers.capture());
+		verifyNoMoreInteractions(context);
+		return markers.getAllValues();
+	}
+	
+	/**
+	 * The check as it was before the shorthands were indexed, trying every shorthand in the registry
+	 */
+	private static List<Object> scanEveryShorthand(CSSStyleRule rule) {
+		List<Object> markers = Lists.newArrayList();
+		for (ECSSProperty shorthand : CSSShortHandRegistry.getAllShortHandProperties()) {
+			if (rule.getDeclarationOfPropertyName(shorthand.getName()) != null) {
+				continue;
+			}
+			
+			CSSDeclaration first = null;
+			boolean hasAll = true;
+			for (CSSPropertyWithDefaultValue subProperty : CSSShortHandRegistry.getShortHandDescriptor(shorthand).getAllSubProperties()) {
+				if (rule.getDeclarationOfPropertyName(subProperty.getProperty().getProp().getName()) == null) {
+					hasAll = false;
+					break;
+				}
+				
+				if (first == null) {
+					first = rule.getDeclarationOfPropertyName(subProperty.getProperty().getPropertyName());
+				}
+			}
+			
+			if (hasAll) {
+				markers.add(first);
+			}
+		}
+		
+		return markers;
+	}
+	
+	private static CSSStyleRule parse(String css) {
+		CascadingStyleSheet stylesheet = CSSReader.readFromString(css, ECSSVersion.LATEST);
+		return stylesheet.getStyleRuleAtIndex(0);
+	}
+}
@@ -14,7 +14,7 @@ import logicanalyser.languages.Context;
 class ImageTagCheck extends Rule<Element> {
 
 	public ImageTagCheck() {
-		super(Element.class, "attributes.img-alt");
+		super(Element.class, "attributes.img-alt", "img");
 	}
 
 	@Override
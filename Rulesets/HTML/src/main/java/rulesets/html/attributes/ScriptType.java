@@ -14,7 +14,7 @@ import logicanalyser.languages.Context;
  */
 class ScriptType extends Rule<Element> {
 	public ScriptType() {
-		super(Element.class, "attributes.script-type");
+		super(Element.class, "attributes.script-type", "script");
 	}
 
 	@Override
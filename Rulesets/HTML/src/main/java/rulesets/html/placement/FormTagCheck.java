@@ -6,19 +6,20 @@ import logicanalyser.Rule;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.languages.Context;
+import logicanalyser.languages.html.ElementStructure;
 
 class FormTagCheck extends Rule<Element> {
 
 	public FormTagCheck() {
-		super(Element.class, "placement.form");
+		super(Element.class, "placement.form", "table");
 	}
 
 	@Override
 	public void check(Context context, Element target) {
 		if (target.tagName().equals("table")) {
-			Element e = target.select("table").first().children().first();
+			Element e = ElementStructure.of(context).getFirstChild(target);
 
-			if (e.tagName().equals("form")) {
+			if (e != null && e.tagName().equals("form")) {
 				context.addMarker(target);
 			}
 		}
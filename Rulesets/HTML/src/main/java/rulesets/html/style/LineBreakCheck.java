@@ -16,7 +16,7 @@ import logicanalyser.languages.Context;
 class LineBreakCheck extends Rule<Element>{
 
 	public LineBreakCheck() {
-		super(Element.class, "linebreak");
+		super(Element.class, "linebreak", "p");
 	}
 
 	@Override
@@ -14,6 +14,7 @@ class StyleInlineCheck extends Rule<Element> {
 
 	public StyleInlineCheck() {
 		super(Element.class, "style.inline-style");
+		requireAttributes("style");
 	}
 
 	@Override
@@ -1,12 +1,14 @@
 package rulesets.html.style;
 
+import java.util.List;
+
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import logicanalyser.Rule;
 import logicanalyser.SeverityRating;
 import logicanalyser.config.Details;
 import logicanalyser.languages.Context;
+import logicanalyser.languages.html.ElementStructure;
 
 /**
  * Suggests the use of {@code <em>} and {@code <strong>} instead
@@ -15,13 +17,15 @@ import logicanalyser.languages.Context;
 class TextStyleCheck extends Rule<Element> {
 
 	public TextStyleCheck() {
-		super(Element.class, "style.format-tags");
+		super(Element.class, "style.format-tags", "head", "body");
 	}
 
 	@Override
 	public void check(Context context, Element target) {
+		ElementStructure structure = ElementStructure.of(context);
+		
 		if (target.tagName().equals("head")) {
-			Elements test = target.select("head").first().children();
+			List<Element> test = structure.getChildren(target);
 			for (Element e : test) {
 				if (e.tagName().equals("b") || e.tagName().equals("i")) {
 					// TODO: This needs to be elsewhere
@@ -30,7 +34,7 @@ class TextStyleCheck extends Rule<Element> {
 			}
 
 		} else if (target.tagName().equals("body")) {
-			Elements test1 = target.select("body").first().children();
+			List<Element> test1 = structure.getChildren(target);
 			for (Element e : test1) {
 				if (e.tagName().equals("b") || e.tagName().equals("i")) {
 					context.addMarker(target);
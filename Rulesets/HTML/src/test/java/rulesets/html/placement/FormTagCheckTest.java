@@ -0,0 +1,35 @@
+package rulesets.html.placement;
+
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import static org.mockito.Mockito.*;
+
+import logicanalyser.languages.Context;
+
+public class FormTagCheckTest {
+	@Test
+	public void rejectsFormDirectlyInTable() {
+		Element table = new Element("table");
+		table.appendElement("form");
+		
+		Context context = mock(Context.class);
+		
+		FormTagCheck rule = new FormTagCheck();
+		rule.check(context, table);
+		
+		verify(context).addMarker(table);
+	}
+	
+	@Test
+	public void acceptsEmptyTable() {
+		Element table = new Element("table");
+		
+		Context context = mock(Context.class);
+		
+		FormTagCheck rule = new FormTagCheck();
+		rule.check(context, table);
+		
+		verifyZeroInteractions(context);
+	}
+}